@@ -0,0 +1,72 @@
+package com.saasquatch.common.base;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nonnull;
+
+/**
+ * Per-thread pool of {@link CharsetEncoder}s and {@link CharsetDecoder}s keyed by {@link Charset},
+ * so the non-UTF-8 paths do not create new coders on every call.<br>
+ * A coder from this class is reset and must only be used on the current thread until the current
+ * call returns, since the next call on the same thread gets the same instance. The coders are held
+ * in {@link ThreadLocal}s, so
+ * {@link com.saasquatch.common.concurrent.RSThreads#clearThreadLocals(Thread)} drops them, and new
+ * ones get created on the next call.
+ *
+ * @author sli
+ */
+final class RSCharsetCoders {
+
+  // Start over if a thread goes through an unexpected number of Charsets
+  private static final int MAX_CHARSETS_PER_THREAD = 8;
+
+  private static final ThreadLocal<Map<Charset, CharsetEncoder>> ENCODERS =
+      ThreadLocal.withInitial(HashMap::new);
+  private static final ThreadLocal<Map<Charset, CharsetDecoder>> DECODERS =
+      ThreadLocal.withInitial(HashMap::new);
+
+  private RSCharsetCoders() {}
+
+  /**
+   * @param errorAction the action for both malformed and unmappable input. Note that
+   *        {@link Charset#encode} uses {@link CodingErrorAction#REPLACE}.
+   * @return the reset {@link CharsetEncoder} of the current thread for the given {@link Charset}
+   */
+  static CharsetEncoder encoder(@Nonnull Charset charset,
+      @Nonnull CodingErrorAction errorAction) {
+    final Map<Charset, CharsetEncoder> encoders = ENCODERS.get();
+    CharsetEncoder encoder = encoders.get(charset);
+    if (encoder == null) {
+      if (encoders.size() >= MAX_CHARSETS_PER_THREAD) {
+        encoders.clear();
+      }
+      encoder = charset.newEncoder();
+      encoders.put(charset, encoder);
+    }
+    return encoder.reset().onMalformedInput(errorAction).onUnmappableCharacter(errorAction);
+  }
+
+  /**
+   * @param errorAction the action for both malformed and unmappable input. Note that
+   *        {@link Charset#decode} uses {@link CodingErrorAction#REPLACE}.
+   * @return the reset {@link CharsetDecoder} of the current thread for the given {@link Charset}
+   */
+  static CharsetDecoder decoder(@Nonnull Charset charset,
+      @Nonnull CodingErrorAction errorAction) {
+    final Map<Charset, CharsetDecoder> decoders = DECODERS.get();
+    CharsetDecoder decoder = decoders.get(charset);
+    if (decoder == null) {
+      if (decoders.size() >= MAX_CHARSETS_PER_THREAD) {
+        decoders.clear();
+      }
+      decoder = charset.newDecoder();
+      decoders.put(charset, decoder);
+    }
+    return decoder.reset().onMalformedInput(errorAction).onUnmappableCharacter(errorAction);
+  }
+
+}
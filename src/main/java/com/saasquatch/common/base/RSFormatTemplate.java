@@ -0,0 +1,436 @@
+package com.saasquatch.common.base;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A format String for {@link String#format(Locale, String, Object...)} with {@link Locale#ROOT}
+ * that is parsed once up front, including the flags, width and precision of each specifier. The
+ * {@code %s}, {@code %d}, {@code %x} and {@code %X} conversions are rendered by hand with the
+ * {@code -}, {@code 0} and {@code #} flags where applicable, as long as the argument is a String
+ * or an integral primitive wrapper. Everything else, e.g. {@code %.2f} or {@code %,d}, goes through
+ * a new {@link Formatter} for each specifier on every render, which parses the specifier again.
+ * Formats with explicit argument indices are rendered with a {@link Formatter} as a whole.<br>
+ * The output is identical to {@link RSStrings#format(String, Object...)}.<br>
+ * This class is immutable and thread-safe.
+ *
+ * @author sli
+ * @see RSStrings#compile(String)
+ */
+@Immutable
+public final class RSFormatTemplate {
+
+  // Same as the pattern used by Formatter
+  private static final Pattern SPECIFIER_PATTERN =
+      Pattern.compile("%(\\d+\\$)?([-#+ 0,(<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+  // Rough guess of the length of a rendered argument
+  private static final int ESTIMATED_ARG_LENGTH = 16;
+
+  private final String format;
+  // Null if the format can only be rendered as a whole
+  @Nullable
+  private final Segment[] segments;
+  private final int estimatedLength;
+
+  private RSFormatTemplate(@Nonnull String format, @Nullable Segment[] segments,
+      int estimatedLength) {
+    this.format = format;
+    this.segments = segments;
+    this.estimatedLength = estimatedLength;
+  }
+
+  static RSFormatTemplate compile(@Nonnull String format) {
+    Objects.requireNonNull(format);
+    final List<Segment> segments = new ArrayList<>();
+    final Matcher matcher = SPECIFIER_PATTERN.matcher(format);
+    int literalStart = 0;
+    int argIdx = 0;
+    int estimatedLength = 0;
+    for (int i = format.indexOf('%'); i >= 0; i = format.indexOf('%', literalStart)) {
+      if (!matcher.find(i) || matcher.start() != i
+          || matcher.group(1) != null || hasRelativeIndex(matcher.group(2))) {
+        // Let the Formatter deal with invalid and indexed specifiers
+        return new RSFormatTemplate(format, null, format.length());
+      }
+      if (i > literalStart) {
+        segments.add(new LiteralSegment(format.substring(literalStart, i)));
+        estimatedLength += i - literalStart;
+      }
+      final String spec = matcher.group();
+      final char conversion = spec.charAt(spec.length() - 1);
+      if (spec.length() == 2 && conversion == '%') {
+        segments.add(new LiteralSegment("%"));
+        estimatedLength++;
+      } else if (spec.length() == 2 && conversion == 'n') {
+        segments.add(new LiteralSegment(System.lineSeparator()));
+        estimatedLength += System.lineSeparator().length();
+      } else if (!isValidSpecifier(spec)) {
+        return new RSFormatTemplate(format, null, format.length());
+      } else if (conversion == '%' || conversion == 'n') {
+        // Flags or width without an argument, e.g. "%-4%"
+        segments.add(new FormatterSegment(spec, -1));
+      } else {
+        segments.add(argSegment(matcher, argIdx));
+        argIdx++;
+        estimatedLength += ESTIMATED_ARG_LENGTH;
+      }
+      literalStart = matcher.end();
+    }
+    if (literalStart < format.length()) {
+      segments.add(new LiteralSegment(format.substring(literalStart)));
+      estimatedLength += format.length() - literalStart;
+    }
+    return new RSFormatTemplate(format, segments.toArray(new Segment[0]), estimatedLength);
+  }
+
+  /**
+   * Check a specifier that is not rendered by hand with a dry run, since the {@link Formatter}
+   * rejects unknown conversions and bad flags before looking at the arguments
+   */
+  private static boolean isValidSpecifier(@Nonnull String spec) {
+    try {
+      new Formatter(new StringBuilder(), Locale.ROOT).format(spec, (Object[]) null);
+      return true;
+    } catch (IllegalFormatException e) {
+      return false;
+    }
+  }
+
+  /**
+   * @return the segment for a valid specifier that consumes an argument, where the specifiers that
+   *         can be rendered by hand have their flags, width and precision parsed up front
+   */
+  private static ArgSegment argSegment(@Nonnull Matcher matcher, int argIdx) {
+    final String spec = matcher.group();
+    final String flags = matcher.group(2) == null ? "" : matcher.group(2);
+    // The dry run has made sure that these are within range
+    final int width = matcher.group(3) == null ? -1 : Integer.parseInt(matcher.group(3));
+    final int precision =
+        matcher.group(4) == null ? -1 : Integer.parseInt(matcher.group(4).substring(1));
+    if (matcher.group(5) != null) {
+      return new FormatterSegment(spec, argIdx);
+    }
+    // The dry run has also rejected the flags that do not apply and the duplicate flags
+    switch (spec.charAt(spec.length() - 1)) {
+      case 's':
+        if (hasOnlyFlags(flags, "-")) {
+          return new StringSegment(spec, argIdx, flags, width, precision);
+        }
+        break;
+      case 'd':
+        if (hasOnlyFlags(flags, "-0")) {
+          return new DecimalSegment(spec, argIdx, flags, width);
+        }
+        break;
+      case 'x':
+      case 'X':
+        if (hasOnlyFlags(flags, "-0#")) {
+          return new HexSegment(spec, argIdx, flags, width);
+        }
+        break;
+      default:
+        break;
+    }
+    return new FormatterSegment(spec, argIdx);
+  }
+
+  private static boolean hasOnlyFlags(@Nonnull String flags, @Nonnull String allowedFlags) {
+    for (int i = 0; i < flags.length(); i++) {
+      if (allowedFlags.indexOf(flags.charAt(i)) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasRelativeIndex(@Nullable String flags) {
+    return flags != null && flags.indexOf('<') >= 0;
+  }
+
+  /**
+   * Render the template with the given arguments
+   *
+   * @see RSStrings#format(String, Object...)
+   */
+  public String format(Object... args) {
+    final StringBuilder sb = new StringBuilder(estimatedLength);
+    try {
+      render(sb, args);
+    } catch (IOException e) {
+      // StringBuilder never throws IOException
+      throw new AssertionError(e);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Render the template with the given arguments directly into the given {@link Appendable}
+   *
+   * @return the given {@link Appendable}
+   * @throws UncheckedIOException if the {@link Appendable} throws an {@link IOException}
+   */
+  public <A extends Appendable> A formatTo(@Nonnull A out, Object... args) {
+    Objects.requireNonNull(out);
+    try {
+      render(out, args);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out;
+  }
+
+  private void render(@Nonnull Appendable out, @Nullable Object[] args) throws IOException {
+    if (segments == null) {
+      formatWithFormatter(out, format, args);
+      return;
+    }
+    for (Segment segment : segments) {
+      segment.render(out, args);
+    }
+  }
+
+  /**
+   * @return the original format String
+   */
+  @Override
+  public String toString() {
+    return format;
+  }
+
+  private static void formatWithFormatter(@Nonnull Appendable out, @Nonnull String format,
+      @Nullable Object... args) throws IOException {
+    final Formatter formatter = new Formatter(out, Locale.ROOT);
+    formatter.format(format, args);
+    if (formatter.ioException() != null) {
+      throw formatter.ioException();
+    }
+  }
+
+  private interface Segment {
+
+    void render(@Nonnull Appendable out, @Nullable Object[] args) throws IOException;
+
+  }
+
+  private static final class LiteralSegment implements Segment {
+
+    private final String literal;
+
+    LiteralSegment(@Nonnull String literal) {
+      this.literal = literal;
+    }
+
+    @Override
+    public void render(@Nonnull Appendable out, @Nullable Object[] args) throws IOException {
+      out.append(literal);
+    }
+
+  }
+
+  /**
+   * A specifier that consumes an argument
+   */
+  private abstract static class ArgSegment implements Segment {
+
+    final String spec;
+    // -1 if the specifier does not take an argument
+    final int argIdx;
+
+    ArgSegment(@Nonnull String spec, int argIdx) {
+      this.spec = spec;
+      this.argIdx = argIdx;
+    }
+
+    @Nullable
+    Object arg(@Nullable Object[] args) {
+      // Same as Formatter, which treats null args as nulls
+      if (args == null) {
+        return null;
+      }
+      if (argIdx >= args.length) {
+        throw new MissingFormatArgumentException(spec);
+      }
+      return args[argIdx];
+    }
+
+    void renderWithFormatter(@Nonnull Appendable out, @Nullable Object arg) throws IOException {
+      formatWithFormatter(out, spec, arg);
+    }
+
+  }
+
+  /**
+   * A specifier that is rendered by hand, with its flags and width parsed up front
+   */
+  private abstract static class PaddedSegment extends ArgSegment {
+
+    // -1 if there is no width
+    private final int width;
+    private final boolean leftJustify;
+    private final boolean zeroPad;
+
+    PaddedSegment(@Nonnull String spec, int argIdx, @Nonnull String flags, int width) {
+      super(spec, argIdx);
+      this.width = width;
+      this.leftJustify = flags.indexOf('-') >= 0;
+      this.zeroPad = flags.indexOf('0') >= 0;
+    }
+
+    boolean hasWidth() {
+      return width >= 0;
+    }
+
+    /**
+     * Append the given rendered argument padded to the width like {@link Formatter}, where zeros go
+     * after the prefix of the given length, e.g. the sign or the "0x"
+     */
+    void appendPadded(@Nonnull Appendable out, @Nonnull String s, int prefixLength)
+        throws IOException {
+      final int padding = width - s.length();
+      if (padding <= 0) {
+        out.append(s);
+      } else if (zeroPad) {
+        out.append(s, 0, prefixLength);
+        appendRepeated(out, '0', padding);
+        out.append(s, prefixLength, s.length());
+      } else if (leftJustify) {
+        out.append(s);
+        appendRepeated(out, ' ', padding);
+      } else {
+        appendRepeated(out, ' ', padding);
+        out.append(s);
+      }
+    }
+
+    private static void appendRepeated(@Nonnull Appendable out, char c, int count)
+        throws IOException {
+      for (int i = 0; i < count; i++) {
+        out.append(c);
+      }
+    }
+
+  }
+
+  private static final class StringSegment extends PaddedSegment {
+
+    // -1 if there is no precision
+    private final int precision;
+
+    StringSegment(@Nonnull String spec, int argIdx, @Nonnull String flags, int width,
+        int precision) {
+      super(spec, argIdx, flags, width);
+      this.precision = precision;
+    }
+
+    @Override
+    public void render(@Nonnull Appendable out, @Nullable Object[] args) throws IOException {
+      final Object arg = arg(args);
+      if (arg instanceof Formattable) {
+        renderWithFormatter(out, arg);
+        return;
+      }
+      final String s = String.valueOf(arg);
+      if (precision >= 0 && precision < s.length()) {
+        // Same as Formatter, which truncates by chars
+        appendPadded(out, s.substring(0, precision), 0);
+      } else {
+        appendPadded(out, s, 0);
+      }
+    }
+
+  }
+
+  private static final class DecimalSegment extends PaddedSegment {
+
+    DecimalSegment(@Nonnull String spec, int argIdx, @Nonnull String flags, int width) {
+      super(spec, argIdx, flags, width);
+    }
+
+    @Override
+    public void render(@Nonnull Appendable out, @Nullable Object[] args) throws IOException {
+      final Object arg = arg(args);
+      if (arg instanceof Integer || arg instanceof Long || arg instanceof Short
+          || arg instanceof Byte) {
+        // Locale.ROOT uses ASCII digits without grouping
+        final long value = ((Number) arg).longValue();
+        if (hasWidth()) {
+          appendPadded(out, Long.toString(value), value < 0 ? 1 : 0);
+        } else if (out instanceof StringBuilder) {
+          ((StringBuilder) out).append(value);
+        } else {
+          out.append(Long.toString(value));
+        }
+      } else {
+        // Including the errors for the wrong types
+        renderWithFormatter(out, arg);
+      }
+    }
+
+  }
+
+  private static final class HexSegment extends PaddedSegment {
+
+    private final boolean upperCase;
+    private final boolean alternate;
+
+    HexSegment(@Nonnull String spec, int argIdx, @Nonnull String flags, int width) {
+      super(spec, argIdx, flags, width);
+      this.upperCase = spec.charAt(spec.length() - 1) == 'X';
+      this.alternate = flags.indexOf('#') >= 0;
+    }
+
+    @Override
+    public void render(@Nonnull Appendable out, @Nullable Object[] args) throws IOException {
+      final Object arg = arg(args);
+      // Negative values are rendered as unsigned values of the same size
+      final String digits;
+      if (arg instanceof Integer) {
+        digits = Integer.toHexString((Integer) arg);
+      } else if (arg instanceof Long) {
+        digits = Long.toHexString((Long) arg);
+      } else if (arg instanceof Short) {
+        digits = Integer.toHexString((Short) arg & 0xFFFF);
+      } else if (arg instanceof Byte) {
+        digits = Integer.toHexString((Byte) arg & 0xFF);
+      } else {
+        // Including the errors for the wrong types
+        renderWithFormatter(out, arg);
+        return;
+      }
+      final String s = alternate ? "0x" + digits : digits;
+      appendPadded(out, upperCase ? s.toUpperCase(Locale.ROOT) : s, alternate ? 2 : 0);
+    }
+
+  }
+
+  private static final class FormatterSegment extends ArgSegment {
+
+    FormatterSegment(@Nonnull String spec, int argIdx) {
+      super(spec, argIdx);
+    }
+
+    @Override
+    public void render(@Nonnull Appendable out, @Nullable Object[] args) throws IOException {
+      if (argIdx < 0) {
+        formatWithFormatter(out, spec);
+      } else {
+        renderWithFormatter(out, arg(args));
+      }
+    }
+
+  }
+
+}
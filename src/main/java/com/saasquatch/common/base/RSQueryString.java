@@ -0,0 +1,267 @@
+package com.saasquatch.common.base;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A parsed query string or {@code application/x-www-form-urlencoded} body.<br>
+ * Parsing only indexes the parameter boundaries over the original {@link CharSequence}. Names and
+ * values are decoded lazily with the given {@link RSUrlCodec.Decoder} when they are accessed, and
+ * no substrings are created for parameters that are never accessed. An optional
+ * {@link RSStringInterner} deduplicates the decoded names and values across parsed query
+ * strings.<br>
+ * This class is immutable and thread-safe as long as the original {@link CharSequence} is not
+ * modified.
+ *
+ * @author sli
+ * @see RSUrlCodec.Decoder
+ */
+@Immutable
+public final class RSQueryString {
+
+  private static final int[] EMPTY_BOUNDS = new int[0];
+  // Each parameter takes 3 ints in the bounds array
+  private static final int STRIDE = 3;
+
+  private final CharSequence source;
+  private final RSUrlCodec.Decoder decoder;
+  // Null if the names and values are not interned
+  @Nullable
+  private final RSStringInterner interner;
+  /*
+   * For every parameter: start (inclusive), index of the '=' or end if there is no '=', and end
+   * (exclusive).
+   */
+  private final int[] bounds;
+  private final int size;
+
+  private RSQueryString(@Nonnull CharSequence source, @Nonnull RSUrlCodec.Decoder decoder,
+      @Nullable RSStringInterner interner, @Nonnull int[] bounds, int size) {
+    this.source = source;
+    this.decoder = decoder;
+    this.interner = interner;
+    this.bounds = bounds;
+    this.size = size;
+  }
+
+  /**
+   * Parse a query string with the {@link RSUrlCodec#getDecoder() default decoder}
+   *
+   * @see #parse(CharSequence, RSUrlCodec.Decoder)
+   */
+  public static RSQueryString parse(@Nonnull CharSequence s) {
+    return parse(s, RSUrlCodec.getDecoder());
+  }
+
+  /**
+   * Parse a query string, where parameters are separated by '&amp;' and names and values are
+   * separated by the first '='. A leading '?' is ignored, and so are empty parameters.<br>
+   * Note that decoding errors in {@link RSUrlCodec.Decoder#strict() strict} mode only surface when
+   * the offending name or value is accessed. Looking up parameters by name skips the names that
+   * cannot be decoded.
+   *
+   * @param decoder the {@link RSUrlCodec.Decoder} used for decoding names and values
+   */
+  public static RSQueryString parse(@Nonnull CharSequence s,
+      @Nonnull RSUrlCodec.Decoder decoder) {
+    return parseWithInterner(s, decoder, null);
+  }
+
+  /**
+   * Parse a query string, where the decoded names and values are the canonical instances from the
+   * given {@link RSStringInterner}, e.g. for IDs that repeat across requests. A new String is only
+   * created for a name or a value if the interner does not have it.
+   *
+   * @see #parse(CharSequence, RSUrlCodec.Decoder)
+   */
+  public static RSQueryString parse(@Nonnull CharSequence s, @Nonnull RSUrlCodec.Decoder decoder,
+      @Nonnull RSStringInterner interner) {
+    return parseWithInterner(s, decoder, Objects.requireNonNull(interner));
+  }
+
+  /**
+   * @param interner the interner for the decoded names and values, or null to not intern
+   */
+  private static RSQueryString parseWithInterner(@Nonnull CharSequence s,
+      @Nonnull RSUrlCodec.Decoder decoder, @Nullable RSStringInterner interner) {
+    Objects.requireNonNull(s);
+    Objects.requireNonNull(decoder);
+    final int len = s.length();
+    int[] bounds = EMPTY_BOUNDS;
+    int size = 0;
+    int paramStart = len > 0 && s.charAt(0) == '?' ? 1 : 0;
+    while (paramStart < len) {
+      int eqIdx = -1;
+      int paramEnd = paramStart;
+      for (; paramEnd < len; paramEnd++) {
+        final char c = s.charAt(paramEnd);
+        if (c == '&') {
+          break;
+        } else if (c == '=' && eqIdx < 0) {
+          eqIdx = paramEnd;
+        }
+      }
+      if (paramEnd > paramStart) {
+        if (bounds.length < (size + 1) * STRIDE) {
+          bounds = Arrays.copyOf(bounds, Math.max(8, size << 1) * STRIDE);
+        }
+        final int offset = size * STRIDE;
+        bounds[offset] = paramStart;
+        bounds[offset + 1] = eqIdx < 0 ? paramEnd : eqIdx;
+        bounds[offset + 2] = paramEnd;
+        size++;
+      }
+      paramStart = paramEnd + 1;
+    }
+    return new RSQueryString(s, decoder, interner, bounds, size);
+  }
+
+  /**
+   * @return the number of parameters, including duplicate names
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the decoded name of the parameter at the given index
+   */
+  public String getName(int index) {
+    final int offset = offset(index);
+    return decoder.decode(source, bounds[offset], bounds[offset + 1], interner);
+  }
+
+  /**
+   * @return the decoded value of the parameter at the given index, or an empty String if the
+   *         parameter does not have a '='
+   */
+  public String getValue(int index) {
+    final int offset = offset(index);
+    final int eqIdx = bounds[offset + 1];
+    final int end = bounds[offset + 2];
+    if (eqIdx == end) {
+      return "";
+    }
+    return decoder.decode(source, eqIdx + 1, end, interner);
+  }
+
+  /**
+   * @return whether a parameter with the given decoded name exists
+   */
+  public boolean containsName(@Nonnull String name) {
+    return indexOf(name, 0) >= 0;
+  }
+
+  /**
+   * @return the decoded value of the first parameter with the given decoded name
+   */
+  public Optional<String> getFirst(@Nonnull String name) {
+    final int idx = indexOf(name, 0);
+    return idx < 0 ? Optional.empty() : Optional.of(getValue(idx));
+  }
+
+  /**
+   * @return the decoded values of all the parameters with the given decoded name as an
+   *         unmodifiable {@link List}
+   */
+  public List<String> getAll(@Nonnull String name) {
+    int idx = indexOf(name, 0);
+    if (idx < 0) {
+      return Collections.emptyList();
+    }
+    final int nextIdx = indexOf(name, idx + 1);
+    if (nextIdx < 0) {
+      return Collections.singletonList(getValue(idx));
+    }
+    final List<String> values = new ArrayList<>();
+    values.add(getValue(idx));
+    for (idx = nextIdx; idx >= 0; idx = indexOf(name, idx + 1)) {
+      values.add(getValue(idx));
+    }
+    return Collections.unmodifiableList(values);
+  }
+
+  /**
+   * Decode everything into an unmodifiable {@link Map} that preserves the order of the names.
+   */
+  public Map<String, List<String>> toMap() {
+    final Map<String, List<String>> result = new LinkedHashMap<>();
+    for (int i = 0; i < size; i++) {
+      result.computeIfAbsent(getName(i), k -> new ArrayList<>(1)).add(getValue(i));
+    }
+    result.replaceAll((k, v) -> Collections.unmodifiableList(v));
+    return Collections.unmodifiableMap(result);
+  }
+
+  @Override
+  public String toString() {
+    return source.toString();
+  }
+
+  /**
+   * @return the index of the first parameter starting from fromIndex with the given decoded name,
+   *         or -1 if not found. Names that cannot be decoded never match.
+   */
+  private int indexOf(@Nonnull String name, int fromIndex) {
+    Objects.requireNonNull(name);
+    for (int i = fromIndex; i < size; i++) {
+      if (nameEquals(i, name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private boolean nameEquals(int index, @Nonnull String name) {
+    final int offset = index * STRIDE;
+    final int start = bounds[offset];
+    final int end = bounds[offset + 1];
+    if (decoder.indexOfFirstEncoded(source, start, end) == end) {
+      // Nothing needs to be decoded. Compare the chars in place.
+      final int len = end - start;
+      if (len != name.length()) {
+        return false;
+      }
+      for (int i = 0; i < len; i++) {
+        if (source.charAt(start + i) != name.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (name.length() > end - start) {
+      // The decoded name is never longer than the encoded one
+      return false;
+    }
+    try {
+      return name.equals(decoder.decode(source, start, end));
+    } catch (IllegalArgumentException e) {
+      /*
+       * The name cannot be decoded in strict mode, so it does not match anything. The error only
+       * surfaces when the name itself is accessed.
+       */
+      return false;
+    }
+  }
+
+  private int offset(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    return index * STRIDE;
+  }
+
+}
@@ -0,0 +1,406 @@
+package com.saasquatch.common.base;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Renders stack traces in the format of {@link Throwable#printStackTrace()} with bounded output,
+ * e.g. for logging deep reactive stacks. The output is streamed into an {@link Appendable} line by
+ * line with:
+ * <ul>
+ * <li>A limit on the number of frames of each Throwable, where the frames that are left out are
+ * counted in the {@code ... N more} line along with the frames in common with the enclosing
+ * Throwable.</li>
+ * <li>A total UTF-8 byte size limit, where the output is cut off at the limit without splitting a
+ * char.</li>
+ * <li>Optional filtering of the frames from the given packages, which are folded into
+ * {@code ... N filtered} lines.</li>
+ * <li>An optional cache of the rendered output, so repeated identical Throwables are only rendered
+ * once. Throwables are considered identical if they have the same class names, messages and
+ * frames throughout the cause chain, so this should not be used with Throwables whose
+ * {@link Throwable#toString()} depends on anything else. Throwables with suppressed exceptions are
+ * never cached.</li>
+ * </ul>
+ * This class is thread-safe, and it is immutable other than the cache.
+ *
+ * @author sli
+ */
+@ThreadSafe
+public final class RSStackTraceRenderer {
+
+  private static final String CAUSE_CAPTION = "Caused by: ";
+  private static final String SUPPRESSED_CAPTION = "Suppressed: ";
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+  private static final StackTraceElement[] NO_FRAMES = new StackTraceElement[0];
+  private static final RSStackTraceRenderer DEFAULT =
+      new RSStackTraceRenderer(64, 32 * 1024, new String[0], 0);
+
+  private final int maxFramesPerThrowable;
+  private final int maxBytes;
+  // Package names with a trailing '.'
+  private final String[] excludedPackagePrefixes;
+  private final int cacheSize;
+  // Null if caching is disabled. Guarded by itself.
+  @Nullable
+  private final Map<CacheKey, String> cache;
+
+  private RSStackTraceRenderer(int maxFramesPerThrowable, int maxBytes,
+      @Nonnull String[] excludedPackagePrefixes, int cacheSize) {
+    this.maxFramesPerThrowable = maxFramesPerThrowable;
+    this.maxBytes = maxBytes;
+    this.excludedPackagePrefixes = excludedPackagePrefixes;
+    this.cacheSize = cacheSize;
+    this.cache = cacheSize == 0 ? null : new LinkedHashMap<CacheKey, String>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CacheKey, String> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  /**
+   * @return a singleton {@link RSStackTraceRenderer} that renders up to 64 frames per Throwable and
+   *         up to 32 KiB in total, without filtering or caching
+   */
+  public static RSStackTraceRenderer getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * @param maxFramesPerThrowable the max number of frames to render for each Throwable. 0 for
+   *        unlimited.
+   * @return a new {@link RSStackTraceRenderer} with the specified config
+   */
+  public RSStackTraceRenderer withMaxFramesPerThrowable(int maxFramesPerThrowable) {
+    if (maxFramesPerThrowable < 0) {
+      throw new IllegalArgumentException("Negative maxFramesPerThrowable");
+    }
+    if (this.maxFramesPerThrowable == maxFramesPerThrowable) {
+      return this;
+    }
+    return new RSStackTraceRenderer(maxFramesPerThrowable, this.maxBytes,
+        this.excludedPackagePrefixes, this.cacheSize);
+  }
+
+  /**
+   * @param maxBytes the max UTF-8 byte size of the whole output. 0 for unlimited.
+   * @return a new {@link RSStackTraceRenderer} with the specified config
+   */
+  public RSStackTraceRenderer withMaxBytes(int maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("Negative maxBytes");
+    }
+    if (this.maxBytes == maxBytes) {
+      return this;
+    }
+    return new RSStackTraceRenderer(this.maxFramesPerThrowable, maxBytes,
+        this.excludedPackagePrefixes, this.cacheSize);
+  }
+
+  /**
+   * @param packageNames the packages whose frames should be filtered out, including their
+   *        subpackages, e.g. {@code "reactor.core"}. Empty for no filtering.
+   * @return a new {@link RSStackTraceRenderer} with the specified config
+   */
+  public RSStackTraceRenderer withExcludedPackages(@Nonnull String... packageNames) {
+    final String[] excludedPackagePrefixes = new String[packageNames.length];
+    for (int i = 0; i < packageNames.length; i++) {
+      excludedPackagePrefixes[i] = Objects.requireNonNull(packageNames[i]) + '.';
+    }
+    if (Arrays.equals(this.excludedPackagePrefixes, excludedPackagePrefixes)) {
+      return this;
+    }
+    return new RSStackTraceRenderer(this.maxFramesPerThrowable, this.maxBytes,
+        excludedPackagePrefixes, this.cacheSize);
+  }
+
+  /**
+   * @param cacheSize the max number of rendered outputs to cache. 0 for no caching.
+   * @return a new {@link RSStackTraceRenderer} with the specified config and its own cache
+   */
+  public RSStackTraceRenderer withCacheSize(int cacheSize) {
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("Negative cacheSize");
+    }
+    if (this.cacheSize == cacheSize) {
+      return this;
+    }
+    return new RSStackTraceRenderer(this.maxFramesPerThrowable, this.maxBytes,
+        this.excludedPackagePrefixes, cacheSize);
+  }
+
+  /**
+   * Render the stack trace of the given Throwable into a String
+   */
+  public String render(@Nonnull Throwable t) {
+    Objects.requireNonNull(t);
+    final CacheKey cacheKey = cache == null ? null : CacheKey.of(t);
+    if (cacheKey != null) {
+      final String cached;
+      synchronized (cache) {
+        cached = cache.get(cacheKey);
+      }
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final StringBuilder sb = new StringBuilder();
+    try {
+      new Rendering(sb).render(t);
+    } catch (IOException e) {
+      // StringBuilder never throws IOException
+      throw new AssertionError(e);
+    }
+    final String result = sb.toString();
+    if (cacheKey != null) {
+      synchronized (cache) {
+        cache.put(cacheKey, result);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Render the stack trace of the given Throwable directly into the given {@link Appendable}. If
+   * caching is enabled, the output is rendered into a String first.
+   *
+   * @return the given {@link Appendable}
+   * @throws UncheckedIOException if the {@link Appendable} throws an {@link IOException}
+   */
+  public <A extends Appendable> A renderTo(@Nonnull A out, @Nonnull Throwable t) {
+    Objects.requireNonNull(out);
+    Objects.requireNonNull(t);
+    try {
+      if (cache == null) {
+        new Rendering(out).render(t);
+      } else {
+        out.append(render(t));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out;
+  }
+
+  private boolean isExcluded(@Nonnull StackTraceElement frame) {
+    for (String excludedPackagePrefix : excludedPackagePrefixes) {
+      if (frame.getClassName().startsWith(excludedPackagePrefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The cache key of a Throwable, which holds everything that is rendered from its cause chain, so
+   * a hash collision never returns the wrong stack trace
+   */
+  private static final class CacheKey {
+
+    private final String[] classNames;
+    private final String[] messages;
+    private final StackTraceElement[][] traces;
+    // The index in the chain that the cause of the last Throwable refers back to, or -1
+    private final int circularIndex;
+    private final int hash;
+
+    private CacheKey(@Nonnull String[] classNames, @Nonnull String[] messages,
+        @Nonnull StackTraceElement[][] traces, int circularIndex) {
+      this.classNames = classNames;
+      this.messages = messages;
+      this.traces = traces;
+      this.circularIndex = circularIndex;
+      int hash = circularIndex;
+      for (int i = 0; i < classNames.length; i++) {
+        hash = 31 * hash + classNames[i].hashCode();
+        hash = 31 * hash + Objects.hashCode(messages[i]);
+        hash = 31 * hash + Arrays.hashCode(traces[i]);
+      }
+      this.hash = hash;
+    }
+
+    /**
+     * @return the cache key for the given Throwable, or null if it should not be cached
+     */
+    @Nullable
+    static CacheKey of(@Nonnull Throwable t) {
+      final List<Throwable> chain = new ArrayList<>();
+      for (Throwable curr : RSThrowables.getCauseChain(t)) {
+        if (curr.getSuppressed().length > 0) {
+          return null;
+        }
+        chain.add(curr);
+      }
+      if (chain.size() == RSThrowables.DEFAULT_CAUSE_CHAIN_LIMIT) {
+        // The rest of the cause chain is unknown
+        return null;
+      }
+      final int size = chain.size();
+      int circularIndex = -1;
+      final Throwable lastCause = chain.get(size - 1).getCause();
+      if (lastCause != null) {
+        for (int i = 0; i < size && circularIndex == -1; i++) {
+          if (chain.get(i) == lastCause) {
+            circularIndex = i;
+          }
+        }
+        if (circularIndex == -1) {
+          // The chain ended on a cause that is only equal to the last Throwable
+          return null;
+        }
+      }
+      final String[] classNames = new String[size];
+      final String[] messages = new String[size];
+      final StackTraceElement[][] traces = new StackTraceElement[size][];
+      for (int i = 0; i < size; i++) {
+        final Throwable curr = chain.get(i);
+        classNames[i] = curr.getClass().getName();
+        messages[i] = curr.getLocalizedMessage();
+        traces[i] = curr.getStackTrace();
+      }
+      return new CacheKey(classNames, messages, traces, circularIndex);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof CacheKey)) {
+        return false;
+      }
+      final CacheKey other = (CacheKey) obj;
+      return hash == other.hash && circularIndex == other.circularIndex
+          && Arrays.equals(classNames, other.classNames)
+          && Arrays.equals(messages, other.messages)
+          && Arrays.deepEquals(traces, other.traces);
+    }
+
+  }
+
+  /**
+   * The state of rendering one Throwable
+   */
+  private final class Rendering {
+
+    private final Appendable out;
+    // Same as the dejaVu set of Throwable#printStackTrace
+    private final Set<Throwable> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int remainingBytes = maxBytes;
+    private boolean truncated;
+
+    Rendering(@Nonnull Appendable out) {
+      this.out = out;
+    }
+
+    void render(@Nonnull Throwable t) throws IOException {
+      renderEnclosed(t, NO_FRAMES, "", "");
+    }
+
+    /**
+     * Render the given Throwable along with its suppressed exceptions and its causes. Causes are
+     * rendered in a loop, so long cause chains do not use up the stack.
+     */
+    private void renderEnclosed(@Nonnull Throwable t, @Nonnull StackTraceElement[] enclosingTrace,
+        @Nonnull String caption, @Nonnull String prefix) throws IOException {
+      Throwable curr = t;
+      StackTraceElement[] enclosing = enclosingTrace;
+      String currCaption = caption;
+      while (curr != null && !truncated) {
+        if (!visited.add(curr)) {
+          // Same format as Java 11+
+          line(prefix + currCaption + "[CIRCULAR REFERENCE: " + curr + "]");
+          return;
+        }
+        final StackTraceElement[] trace = curr.getStackTrace();
+        line(prefix + currCaption + curr);
+        frames(trace, enclosing, prefix);
+        for (Throwable suppressed : curr.getSuppressed()) {
+          renderEnclosed(suppressed, trace, SUPPRESSED_CAPTION, prefix + '\t');
+        }
+        enclosing = trace;
+        curr = curr.getCause();
+        currCaption = CAUSE_CAPTION;
+      }
+    }
+
+    private void frames(@Nonnull StackTraceElement[] trace,
+        @Nonnull StackTraceElement[] enclosingTrace, @Nonnull String prefix) throws IOException {
+      // Compute the number of frames in common with the enclosing trace
+      int m = trace.length - 1;
+      int n = enclosingTrace.length - 1;
+      while (m >= 0 && n >= 0 && trace[m].equals(enclosingTrace[n])) {
+        m--;
+        n--;
+      }
+      final int framesInCommon = trace.length - 1 - m;
+      int renderedCount = 0;
+      int filteredCount = 0;
+      int i = 0;
+      for (; i <= m && !truncated; i++) {
+        if (isExcluded(trace[i])) {
+          filteredCount++;
+          continue;
+        }
+        if (maxFramesPerThrowable > 0 && renderedCount == maxFramesPerThrowable) {
+          break;
+        }
+        if (filteredCount > 0) {
+          line(prefix + "\t... " + filteredCount + " filtered");
+          filteredCount = 0;
+        }
+        line(prefix + "\tat " + trace[i]);
+        renderedCount++;
+      }
+      if (i > m && filteredCount > 0) {
+        line(prefix + "\t... " + filteredCount + " filtered");
+        filteredCount = 0;
+      }
+      final int omittedCount = filteredCount + (m + 1 - i) + framesInCommon;
+      if (omittedCount > 0) {
+        line(prefix + "\t... " + omittedCount + " more");
+      }
+    }
+
+    private void line(@Nonnull String line) throws IOException {
+      if (truncated) {
+        return;
+      }
+      if (maxBytes == 0) {
+        out.append(line).append(LINE_SEPARATOR);
+        return;
+      }
+      final int lineBytes = RSStrings.utf8Length(line) + LINE_SEPARATOR.length();
+      if (lineBytes <= remainingBytes) {
+        out.append(line).append(LINE_SEPARATOR);
+        remainingBytes -= lineBytes;
+        return;
+      }
+      // Cut off the output at the limit
+      truncated = true;
+      out.append(RSStrings.truncateToUtf8ByteSize(line, remainingBytes));
+      remainingBytes = 0;
+    }
+
+  }
+
+}
@@ -0,0 +1,58 @@
+package com.saasquatch.common.base;
+
+import javax.annotation.Nullable;
+
+/**
+ * Base class for exceptions used for control flow, e.g. validation failures and not found cases,
+ * which are thrown often and expected to be handled, so capturing a stack trace is wasted work.
+ * Suppression is disabled, and each subclass chooses whether to capture a stack trace.<br>
+ * An instance that does not capture a stack trace is immutable, since its cause cannot be changed
+ * with {@link #initCause(Throwable)} and {@link #setStackTrace(StackTraceElement[])} has no effect
+ * on it, so it can be preallocated once and thrown over and over again.<br>
+ * This is a {@link RuntimeException}, so {@link RSThrowables#wrapAndThrow(Throwable)} throws it as
+ * is, and it can be found with {@link RSThrowables#findFirstInCauseChain(Throwable, Class)} and
+ * {@link RSThrowables#unwrapAndThrow(Throwable, Class)} after going through other wrappers.
+ *
+ * <pre>
+ * class NotFoundException extends RSStacklessException {
+ *   static final NotFoundException INSTANCE = new NotFoundException();
+ *
+ *   private NotFoundException() {
+ *     super("Not found");
+ *   }
+ * }
+ *
+ * throw NotFoundException.INSTANCE;
+ * </pre>
+ *
+ * @author sli
+ */
+public abstract class RSStacklessException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Create an exception without a stack trace or a cause
+   */
+  protected RSStacklessException(@Nullable String message) {
+    this(message, null, false);
+  }
+
+  /**
+   * Create an exception without a stack trace
+   */
+  protected RSStacklessException(@Nullable String message, @Nullable Throwable cause) {
+    this(message, cause, false);
+  }
+
+  /**
+   * @param captureStackTrace whether to capture a stack trace. Instances that capture a stack trace
+   *        should not be preallocated, since the stack trace would be the one of the preallocation.
+   */
+  protected RSStacklessException(@Nullable String message, @Nullable Throwable cause,
+      boolean captureStackTrace) {
+    // The cause is always set here, so it can never be changed with initCause
+    super(message, cause, false, captureStackTrace);
+  }
+
+}
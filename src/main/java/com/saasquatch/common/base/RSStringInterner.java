@@ -0,0 +1,176 @@
+package com.saasquatch.common.base;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A bounded, lock-free String interner for deduplicating high-cardinality but repetitive Strings,
+ * e.g. IDs and header values, without the unbounded growth of {@link String#intern()}.<br>
+ * The interned Strings are kept in a fixed number of slots, where each String can live in one of 2
+ * slots picked by its hash. When both slots are taken by other Strings, one of them gets replaced,
+ * so an interned String may get dropped and a later call may return a different instance with the
+ * same content. Lookups go straight from a {@link CharSequence} or a char range, and a new String
+ * is only created when there is no match.<br>
+ * This class is thread-safe.
+ *
+ * @author sli
+ */
+@ThreadSafe
+public final class RSStringInterner {
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private final AtomicReferenceArray<String> slots;
+  private final int mask;
+
+  private RSStringInterner(int capacity) {
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * @param maxSize the max number of Strings to keep, which is rounded up to a power of 2
+   * @return a new {@link RSStringInterner}
+   */
+  public static RSStringInterner create(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Non-positive maxSize");
+    }
+    if (maxSize > MAX_CAPACITY) {
+      throw new IllegalArgumentException("maxSize too large");
+    }
+    // At least 2 so the 2 slots of a String are different
+    final int capacity = Math.max(2, Integer.highestOneBit(maxSize - 1) << 1);
+    return new RSStringInterner(capacity);
+  }
+
+  /**
+   * @return the canonical String with the same content as the given {@link CharSequence}. If the
+   *         given {@link CharSequence} is a String without a canonical instance, it becomes the
+   *         canonical instance.
+   */
+  public String intern(@Nonnull CharSequence s) {
+    if (s instanceof String) {
+      // Use the cached hash of the String
+      final String str = (String) s;
+      final String interned = lookup(str, 0, str.length(), str.hashCode());
+      return interned != null ? interned : store(str, str.hashCode());
+    }
+    return intern(s, 0, s.length());
+  }
+
+  /**
+   * @return the canonical String with the same content as the given range of the given
+   *         {@link CharSequence}
+   * @throws IndexOutOfBoundsException if the range is out of bounds
+   */
+  public String intern(@Nonnull CharSequence s, int start, int end) {
+    Objects.requireNonNull(s);
+    if (start < 0 || end > s.length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start " + start + ", end " + end + ", length " + s.length());
+    }
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + s.charAt(i);
+    }
+    final String interned = lookup(s, start, end, hash);
+    return interned != null ? interned : store(s.subSequence(start, end).toString(), hash);
+  }
+
+  /**
+   * @return the canonical String with the same content as the given range of the given char array
+   * @throws IndexOutOfBoundsException if the range is out of bounds
+   */
+  public String intern(@Nonnull char[] chars, int offset, int length) {
+    Objects.requireNonNull(chars);
+    if (offset < 0 || length < 0 || offset > chars.length - length) {
+      throw new IndexOutOfBoundsException(
+          "offset " + offset + ", length " + length + ", array length " + chars.length);
+    }
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + chars[i];
+    }
+    final String candidate1 = slots.get(slot1(hash));
+    if (contentEquals(candidate1, hash, chars, offset, length)) {
+      return candidate1;
+    }
+    final String candidate2 = slots.get(slot2(hash));
+    if (contentEquals(candidate2, hash, chars, offset, length)) {
+      return candidate2;
+    }
+    return store(new String(chars, offset, length), hash);
+  }
+
+  /**
+   * @param hash the hash of the range, which is the same as {@link String#hashCode()}
+   * @return the String in one of the 2 slots that has the same content as the range, or null
+   */
+  private String lookup(@Nonnull CharSequence s, int start, int end, int hash) {
+    final String candidate1 = slots.get(slot1(hash));
+    if (contentEquals(candidate1, hash, s, start, end)) {
+      return candidate1;
+    }
+    final String candidate2 = slots.get(slot2(hash));
+    if (contentEquals(candidate2, hash, s, start, end)) {
+      return candidate2;
+    }
+    return null;
+  }
+
+  /**
+   * Store the String in an empty slot, or replace the String in the first slot if both are taken.
+   *
+   * @return the given String
+   */
+  private String store(@Nonnull String s, int hash) {
+    final int slot1 = slot1(hash);
+    final int slot2 = slot2(hash);
+    if (slots.get(slot1) != null && slots.get(slot2) == null) {
+      slots.lazySet(slot2, s);
+    } else {
+      slots.lazySet(slot1, s);
+    }
+    return s;
+  }
+
+  private int slot1(int hash) {
+    // Spread the high bits, since the mask only keeps the low bits
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private int slot2(int hash) {
+    // Flipping the lowest bit keeps the 2 slots on the same cache line
+    return slot1(hash) ^ 1;
+  }
+
+  private static boolean contentEquals(String candidate, int hash, @Nonnull CharSequence s,
+      int start, int end) {
+    if (candidate == null || candidate.hashCode() != hash || candidate.length() != end - start) {
+      return false;
+    }
+    for (int i = 0; i < candidate.length(); i++) {
+      if (candidate.charAt(i) != s.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean contentEquals(String candidate, int hash, @Nonnull char[] chars,
+      int offset, int length) {
+    if (candidate == null || candidate.hashCode() != hash || candidate.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (candidate.charAt(i) != chars[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -3,9 +3,14 @@ package com.saasquatch.common.base;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -28,10 +33,120 @@ public final class RSStrings {
   }
 
   /**
-   * Truncate a String to fit a UTF-8 bytes size
+   * Parse the given format String once into an immutable and thread-safe template, which renders
+   * the same output as {@link #format(String, Object...)} without parsing the format String on
+   * every call.
+   *
+   * @see RSFormatTemplate
+   */
+  public static RSFormatTemplate compile(@Nonnull String format) {
+    return RSFormatTemplate.compile(format);
+  }
+
+  /**
+   * Truncate a String to fit a UTF-8 bytes size. The encoded size is counted by walking the chars,
+   * so nothing is encoded or allocated other than the resulting substring. Surrogate pairs are
+   * never split. Like {@link #truncateToByteSize(String, int, Charset)}, the String is also cut
+   * off at the first unpaired surrogate, since it is malformed and cannot be encoded.
    */
   public static String truncateToUtf8ByteSize(@Nullable String s, int maxBytes) {
-    return truncateToByteSize(s, maxBytes, UTF_8);
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException();
+    }
+    if (s == null || s.isEmpty()) {
+      return s;
+    }
+    final int truncateIdx = truncateIndex(utf8Truncate(s, maxBytes));
+    if (truncateIdx == s.length()) {
+      // No need to make another copy if we don't need any truncation
+      return s;
+    }
+    return s.substring(0, truncateIdx);
+  }
+
+  /**
+   * Truncate the fields in order to fit both a per-field and a total UTF-8 byte size. Each field
+   * gets at most what is left of the total after the fields before it, so the fields at the end
+   * get truncated first. Every field is walked at most once.
+   *
+   * @param fields the fields, which can contain nulls
+   * @return a new array of the truncated fields
+   * @see #truncateToUtf8ByteSize(String, int)
+   */
+  public static String[] truncateToUtf8ByteBudget(@Nonnull String[] fields,
+      int maxBytesPerField, int maxTotalBytes) {
+    Objects.requireNonNull(fields);
+    if (maxBytesPerField < 0 || maxTotalBytes < 0) {
+      throw new IllegalArgumentException();
+    }
+    final String[] result = new String[fields.length];
+    int remainingBytes = maxTotalBytes;
+    for (int i = 0; i < fields.length; i++) {
+      final String field = fields[i];
+      final long truncated =
+          utf8TruncateNullable(field, Math.min(maxBytesPerField, remainingBytes));
+      result[i] = substring(field, truncateIndex(truncated));
+      remainingBytes -= truncatedUtf8Length(truncated);
+    }
+    return result;
+  }
+
+  /**
+   * Same as {@link #truncateToUtf8ByteBudget(String[], int, int)}, but for the values of a
+   * {@link Map} in its iteration order.
+   *
+   * @return a new unmodifiable {@link Map} that preserves the iteration order of the given
+   *         {@link Map}
+   */
+  public static <K> Map<K, String> truncateToUtf8ByteBudget(
+      @Nonnull Map<K, String> fields, int maxBytesPerField, int maxTotalBytes) {
+    Objects.requireNonNull(fields);
+    if (maxBytesPerField < 0 || maxTotalBytes < 0) {
+      throw new IllegalArgumentException();
+    }
+    final Map<K, String> result = new LinkedHashMap<>(fields.size() * 4 / 3 + 1);
+    int remainingBytes = maxTotalBytes;
+    for (Map.Entry<K, String> entry : fields.entrySet()) {
+      final String field = entry.getValue();
+      final long truncated =
+          utf8TruncateNullable(field, Math.min(maxBytesPerField, remainingBytes));
+      result.put(entry.getKey(), substring(field, truncateIndex(truncated)));
+      remainingBytes -= truncatedUtf8Length(truncated);
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Compute the UTF-8 encoded size without encoding. The result is identical to
+   * {@code s.toString().getBytes(UTF_8).length}, where unpaired surrogates are replaced with 1
+   * byte.
+   *
+   * @throws IllegalArgumentException if the size does not fit in an int
+   */
+  public static int utf8Length(@Nonnull CharSequence s) {
+    final int len = s.length();
+    // Every char is at least 1 byte
+    long bytes = len;
+    for (int i = 0; i < len; i++) {
+      final char c = s.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        bytes += 1;
+      } else if (!Character.isSurrogate(c)) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c) && i + 1 < len
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        // 4 bytes for the 2 chars of a surrogate pair
+        bytes += 2;
+        i++;
+      }
+    }
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("UTF-8 length overflows an int");
+    }
+    return (int) bytes;
   }
 
   /**
@@ -40,6 +155,9 @@ public final class RSStrings {
   public static String truncateToByteSize(@Nullable String s, int maxBytes,
       @Nonnull Charset charset) {
     Objects.requireNonNull(charset);
+    if (UTF_8.equals(charset)) {
+      return truncateToUtf8ByteSize(s, maxBytes);
+    }
     if (maxBytes < 0) {
       throw new IllegalArgumentException();
     }
@@ -47,11 +165,20 @@ public final class RSStrings {
       return s;
     }
     final CharBuffer in = CharBuffer.wrap(s);
-    final ByteBuffer out = ByteBuffer.allocate(maxBytes);
-    final CharsetEncoder encoder = charset.newEncoder();
+    final CharsetEncoder encoder = RSCharsetCoders.encoder(charset, CodingErrorAction.REPORT);
+    // No need for a buffer of maxBytes if the whole String takes fewer bytes
+    final ByteBuffer out = ByteBuffer.allocate((int) Math.min(maxBytes,
+        (long) Math.ceil(s.length() * (double) encoder.maxBytesPerChar())));
     encoder.encode(in, out, true);
     out.flip();
-    final CharBuffer decoded = charset.decode(out);
+    final CharBuffer decoded;
+    try {
+      // Same behavior as Charset#decode
+      decoded = RSCharsetCoders.decoder(charset, CodingErrorAction.REPLACE).decode(out);
+    } catch (CharacterCodingException e) {
+      // Never thrown with CodingErrorAction.REPLACE
+      throw new AssertionError(e);
+    }
     final int decodedLen = decoded.length();
     if (decodedLen == 0) {
       return "";
@@ -63,4 +190,165 @@ public final class RSStrings {
     }
   }
 
+  /**
+   * Compare 2 {@link CharSequence}s ignoring the case of ASCII letters only, which is the
+   * comparison for protocol tokens like header names, schemes, and content codings. Non-ASCII chars
+   * are compared as is.
+   *
+   * @return true if both are null, or if both have the same chars ignoring ASCII case
+   */
+  public static boolean equalsIgnoreAsciiCase(@Nullable CharSequence a, @Nullable CharSequence b) {
+    if (a == b) {
+      return true;
+    }
+    if (a == null || b == null || a.length() != b.length()) {
+      return false;
+    }
+    return regionMatches(a, true, 0, b, 0, a.length());
+  }
+
+  /**
+   * Same as {@link String#regionMatches(boolean, int, String, int, int)}, but for
+   * {@link CharSequence}s and with {@code ignoreCase} only applying to ASCII letters.
+   *
+   * @return false if either region is out of bounds
+   */
+  public static boolean regionMatches(@Nonnull CharSequence s, boolean ignoreAsciiCase,
+      int offset, @Nonnull CharSequence other, int otherOffset, int len) {
+    Objects.requireNonNull(s);
+    Objects.requireNonNull(other);
+    if (offset < 0 || otherOffset < 0 || offset > (long) s.length() - len
+        || otherOffset > (long) other.length() - len) {
+      return false;
+    }
+    for (int i = 0; i < len; i++) {
+      final char c1 = s.charAt(offset + i);
+      final char c2 = other.charAt(otherOffset + i);
+      if (c1 != c2 && (!ignoreAsciiCase || toAsciiLowerCase(c1) != toAsciiLowerCase(c2))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Lower case the ASCII letters only, without the Unicode case mapping of
+   * {@link String#toLowerCase(Locale)}.
+   *
+   * @return the lower cased String, which is {@code s.toString()} if there is nothing to lower
+   *         case. This means that no copy is made if the input is a lower case String.
+   */
+  public static String toAsciiLowerCase(@Nonnull CharSequence s) {
+    return toAsciiLowerCase(s, 0, s.length());
+  }
+
+  /**
+   * Lower case the ASCII letters only for the chars from start (inclusive) to end (exclusive)
+   * without making a copy of the range first.
+   *
+   * @see #toAsciiLowerCase(CharSequence)
+   */
+  public static String toAsciiLowerCase(@Nonnull CharSequence s, int start, int end) {
+    if (start < 0 || end > s.length() || start > end) {
+      throw new IndexOutOfBoundsException(
+          "start " + start + ", end " + end + ", length " + s.length());
+    }
+    int i = start;
+    while (i < end && !isAsciiUpperCase(s.charAt(i))) {
+      i++;
+    }
+    if (i == end) {
+      // Nothing to lower case
+      return s.subSequence(start, end).toString();
+    }
+    final char[] chars = new char[end - start];
+    for (int j = start; j < i; j++) {
+      chars[j - start] = s.charAt(j);
+    }
+    for (; i < end; i++) {
+      chars[i - start] = toAsciiLowerCase(s.charAt(i));
+    }
+    return new String(chars);
+  }
+
+  /**
+   * Compute a hash code that is consistent with
+   * {@link #equalsIgnoreAsciiCase(CharSequence, CharSequence)}, e.g. for case-insensitive map keys.
+   * The result is identical to {@code toAsciiLowerCase(s).hashCode()}, but nothing is allocated.
+   */
+  public static int hashCodeIgnoreAsciiCase(@Nonnull CharSequence s) {
+    final int len = s.length();
+    int hash = 0;
+    for (int i = 0; i < len; i++) {
+      hash = 31 * hash + toAsciiLowerCase(s.charAt(i));
+    }
+    return hash;
+  }
+
+  private static boolean isAsciiUpperCase(char c) {
+    return c >= 'A' && c <= 'Z';
+  }
+
+  private static char toAsciiLowerCase(char c) {
+    return isAsciiUpperCase(c) ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  private static long utf8TruncateNullable(@Nullable String s, int maxBytes) {
+    return s == null ? 0 : utf8Truncate(s, maxBytes);
+  }
+
+  private static String substring(@Nullable String s, int endIdx) {
+    return s == null || endIdx == s.length() ? s : s.substring(0, endIdx);
+  }
+
+  private static int truncateIndex(long truncated) {
+    return (int) truncated;
+  }
+
+  private static int truncatedUtf8Length(long truncated) {
+    return (int) (truncated >>> 32);
+  }
+
+  /**
+   * Find the number of leading chars that fit in the given UTF-8 byte size without splitting a
+   * surrogate pair, stopping at the first unpaired surrogate.
+   *
+   * @return the UTF-8 size of the leading chars in the high 32 bits and the number of leading chars
+   *         in the low 32 bits, so both come out of one pass without allocating. Use
+   *         {@link #truncateIndex(long)} and {@link #truncatedUtf8Length(long)} to unpack it.
+   */
+  private static long utf8Truncate(@Nonnull CharSequence s, int maxBytes) {
+    final int len = s.length();
+    long bytes = 0;
+    int i = 0;
+    while (i < len) {
+      final char c = s.charAt(i);
+      final int charLen;
+      final int byteLen;
+      if (c < 0x80) {
+        charLen = 1;
+        byteLen = 1;
+      } else if (c < 0x800) {
+        charLen = 1;
+        byteLen = 2;
+      } else if (!Character.isSurrogate(c)) {
+        charLen = 1;
+        byteLen = 3;
+      } else if (Character.isHighSurrogate(c) && i + 1 < len
+          && Character.isLowSurrogate(s.charAt(i + 1))) {
+        charLen = 2;
+        byteLen = 4;
+      } else {
+        // Malformed
+        return (bytes << 32) | i;
+      }
+      if (bytes + byteLen > maxBytes) {
+        return (bytes << 32) | i;
+      }
+      bytes += byteLen;
+      i += charLen;
+    }
+    return (bytes << 32) | len;
+  }
+
 }
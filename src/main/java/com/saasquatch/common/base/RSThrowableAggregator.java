@@ -0,0 +1,227 @@
+package com.saasquatch.common.base;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Deduplicates repeated occurrences of the same failure, e.g. to keep the logs from getting flooded
+ * when a dependency is down. Throwables are grouped by {@link RSThrowables#fingerprint(Throwable)},
+ * and for each fingerprint, one sample along with the number of occurrences is emitted per window.
+ * The first occurrence of a fingerprint is emitted right away. The occurrences after that are only
+ * counted until the window is over, at which point the next occurrence is emitted with the count
+ * since the last emission.<br>
+ * Windows are only checked when something gets recorded, so {@link #flush()} should be called
+ * periodically to emit the counts of the failures that have stopped occurring, and to stop keeping
+ * track of them.<br>
+ * This class is thread-safe. The counters are {@link LongAdder}s, so threads recording the same
+ * failure do not contend with each other.
+ *
+ * <pre>
+ * RSThrowableAggregator aggregator = RSThrowableAggregator.create(Duration.ofMinutes(1), 1000,
+ *     summary -&gt; logger.error("Failed {} times", summary.getCount(), summary.getSample()));
+ * aggregator.record(e);
+ * </pre>
+ *
+ * @author sli
+ */
+@ThreadSafe
+public final class RSThrowableAggregator {
+
+  private final long windowNanos;
+  private final int maxSize;
+  private final Consumer<? super Summary> sink;
+  private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+  private RSThrowableAggregator(long windowNanos, int maxSize,
+      @Nonnull Consumer<? super Summary> sink) {
+    this.windowNanos = windowNanos;
+    this.maxSize = maxSize;
+    this.sink = sink;
+  }
+
+  /**
+   * @param window the min amount of time between 2 emissions of the same fingerprint
+   * @param maxSize the max number of fingerprints to keep track of. Once the limit is reached, the
+   *        Throwables with new fingerprints are emitted right away until {@link #flush()} gets rid
+   *        of the idle ones.
+   * @param sink the {@link Consumer} for the emitted {@link Summary Summaries}, which is called in
+   *        the threads that call {@link #record(Throwable)} and {@link #flush()}
+   * @return a new {@link RSThrowableAggregator}
+   */
+  public static RSThrowableAggregator create(@Nonnull Duration window, int maxSize,
+      @Nonnull Consumer<? super Summary> sink) {
+    if (window.isNegative()) {
+      throw new IllegalArgumentException("Negative window");
+    }
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Non-positive maxSize");
+    }
+    return new RSThrowableAggregator(window.toNanos(), maxSize, Objects.requireNonNull(sink));
+  }
+
+  /**
+   * Record an occurrence of the given Throwable, and emit it if it is the first occurrence of its
+   * fingerprint or if the window of its fingerprint is over.
+   */
+  public void record(@Nonnull Throwable t) {
+    final long fingerprint = RSThrowables.fingerprint(t);
+    final long now = System.nanoTime();
+    Entry entry = entries.get(fingerprint);
+    if (entry == null) {
+      if (entries.size() >= maxSize) {
+        // Too many fingerprints to keep track of. Emit it without deduplicating.
+        sink.accept(new Summary(fingerprint, t, 1));
+        return;
+      }
+      final Entry newEntry = new Entry(t, now);
+      entry = entries.putIfAbsent(fingerprint, newEntry);
+      if (entry == null) {
+        sink.accept(new Summary(fingerprint, t, 1));
+        return;
+      }
+    }
+    entry.count.increment();
+    if (now - entry.windowStart < windowNanos) {
+      return;
+    }
+    final Summary summary = entry.emit(fingerprint, t, now, windowNanos);
+    if (summary != null) {
+      sink.accept(summary);
+    }
+  }
+
+  /**
+   * Emit the occurrences that have not been emitted yet for the fingerprints whose windows are
+   * over, and stop keeping track of the fingerprints that have not occurred for a whole window.
+   */
+  public void flush() {
+    final List<Summary> summaries = new ArrayList<>();
+    final long now = System.nanoTime();
+    entries.forEach((fingerprint, entry) -> {
+      final Summary summary = entry.emit(fingerprint, null, now, windowNanos);
+      if (summary != null) {
+        summaries.add(summary);
+      } else {
+        entries.computeIfPresent(fingerprint, (k, v) -> v.isIdle(now, windowNanos) ? null : v);
+      }
+    });
+    summaries.forEach(sink);
+  }
+
+  /**
+   * @return the number of fingerprints currently being tracked
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * A sample of a failure along with the number of times it has occurred
+   */
+  @Immutable
+  public static final class Summary {
+
+    private final long fingerprint;
+    private final Throwable sample;
+    private final long count;
+
+    Summary(long fingerprint, @Nonnull Throwable sample, long count) {
+      this.fingerprint = fingerprint;
+      this.sample = sample;
+      this.count = count;
+    }
+
+    /**
+     * @see RSThrowables#fingerprint(Throwable)
+     */
+    public long getFingerprint() {
+      return fingerprint;
+    }
+
+    /**
+     * @return one of the occurrences
+     */
+    public Throwable getSample() {
+      return sample;
+    }
+
+    /**
+     * @return the number of occurrences since the last emission of the same fingerprint
+     */
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return RSStrings.format("%s (%d times)", sample, count);
+    }
+
+  }
+
+  private static final class Entry {
+
+    // The number of occurrences, including the first one that is emitted before this is created
+    final LongAdder count = new LongAdder();
+    // Only written while holding the lock
+    volatile long windowStart;
+    // Guarded by this
+    private Throwable sample;
+    // Guarded by this
+    private long emittedCount = 1;
+
+    Entry(@Nonnull Throwable sample, long windowStart) {
+      this.count.increment();
+      this.sample = sample;
+      this.windowStart = windowStart;
+    }
+
+    /**
+     * Collect the occurrences that have not been emitted and start a new window, if the current
+     * window is over.
+     *
+     * @param newSample the sample for the emission, or null to use the previous sample
+     * @return the {@link Summary} to emit, or null if there is nothing to emit
+     */
+    @Nullable
+    synchronized Summary emit(long fingerprint, @Nullable Throwable newSample, long now,
+        long windowNanos) {
+      if (now - windowStart < windowNanos) {
+        // Another thread has already started a new window
+        return null;
+      }
+      final long total = count.sum();
+      final long pending = total - emittedCount;
+      if (pending == 0) {
+        return null;
+      }
+      if (newSample != null) {
+        sample = newSample;
+      }
+      emittedCount = total;
+      windowStart = now;
+      return new Summary(fingerprint, sample, pending);
+    }
+
+    /**
+     * @return whether nothing has occurred for a whole window. If anything gets recorded on an
+     *         idle entry after it has been removed, the window is already over, so it gets emitted
+     *         right away and nothing gets lost.
+     */
+    synchronized boolean isIdle(long now, long windowNanos) {
+      return now - windowStart >= windowNanos && count.sum() == emittedCount;
+    }
+
+  }
+
+}
@@ -3,16 +3,23 @@ package com.saasquatch.common.base;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.Spliterator;
 import java.util.Spliterators;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import com.saasquatch.common.collect.RSCollectors;
 
 /**
@@ -23,6 +30,24 @@ import com.saasquatch.common.collect.RSCollectors;
 public final class RSThrowables {
 
   static final int DEFAULT_CAUSE_CHAIN_LIMIT = 100;
+  private static final int DEFAULT_FINGERPRINT_FRAME_COUNT = 8;
+  /*
+   * The number of Throwables at the start of the cause chain that are tracked in local variables,
+   * so short cause chains are checked for cycles without allocating anything
+   */
+  private static final int SHORT_CAUSE_CHAIN_LENGTH = 3;
+
+  /*
+   * The superclasses of each Throwable class, so checking a Throwable against multiple classes is a
+   * set lookup per class. The values only reference classes that the keys already reference, so
+   * they do not keep any class loaders alive.
+   */
+  private static final ClassValue<Set<Class<?>>> SUPERCLASSES = new ClassValue<Set<Class<?>>>() {
+    @Override
+    protected Set<Class<?>> computeValue(Class<?> type) {
+      return computeSuperclasses(type);
+    }
+  };
 
   private RSThrowables() {}
 
@@ -66,17 +91,59 @@ public final class RSThrowables {
   }
 
   /**
-   * Get the cause chain with an arbitrary limit.
+   * Get the cause chain with an arbitrary limit. The chain ends before any Throwable that is
+   * already in the chain, so a cyclic cause chain is safe to traverse without a limit.
    *
    * @param limit The limit for the cause chain. 0 for unlimited.
    */
   public static Iterable<Throwable> getCauseChain(@Nonnull Throwable t, int limit) {
-    if (limit < 0) {
-      throw new IllegalArgumentException("Negative limit");
-    }
+    checkLimit(limit);
     return new CauseChainIterable(Objects.requireNonNull(t), limit);
   }
 
+  /**
+   * Visit the cause chain with limit 100.
+   *
+   * @see #forEachCause(Throwable, int, Predicate)
+   */
+  public static boolean forEachCause(@Nonnull Throwable t,
+      @Nonnull Predicate<? super Throwable> visitor) {
+    return forEachCause(t, DEFAULT_CAUSE_CHAIN_LIMIT, visitor);
+  }
+
+  /**
+   * Visit the cause chain in order until the visitor returns false, without allocating an
+   * {@link Iterator} or a {@link Stream}.
+   *
+   * @param limit the limit for the cause chain. 0 for unlimited.
+   * @param visitor returns whether to keep going
+   * @return true if the whole cause chain has been visited, or false if the visitor stopped early
+   */
+  public static boolean forEachCause(@Nonnull Throwable t, int limit,
+      @Nonnull Predicate<? super Throwable> visitor) {
+    Objects.requireNonNull(t);
+    Objects.requireNonNull(visitor);
+    checkLimit(limit);
+    Throwable second = null;
+    Throwable third = null;
+    VisitedCauses visited = null;
+    int count = 0;
+    for (Throwable curr = t; curr != null;
+        curr = nextCause(t, second, third, curr, ++count, limit, visited)) {
+      if (count == 1) {
+        second = curr;
+      } else if (count == 2) {
+        third = curr;
+      } else if (count == SHORT_CAUSE_CHAIN_LENGTH) {
+        visited = new VisitedCauses(curr);
+      }
+      if (!visitor.test(curr)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Find the first Throwable in the cause chain that is an instance of the given exception class.
    *
@@ -84,10 +151,37 @@ public final class RSThrowables {
    */
   public static <X extends Throwable> Optional<? extends X> findFirstInCauseChain(
       @Nonnull Throwable t, @Nonnull Class<? extends X> exceptionClass) {
-    return getCauseChainStream(t)
-        .filter(exceptionClass::isInstance)
-        .map(exceptionClass::cast)
-        .findFirst();
+    return Optional.ofNullable(findFirstOrNull(t, exceptionClass));
+  }
+
+  /**
+   * Find the index of the first Throwable in the cause chain with limit 100 that is an instance of
+   * the given exception class.
+   *
+   * @return the index, where the given Throwable itself is 0, or -1 if there is no such Throwable
+   */
+  public static int indexOfInCauseChain(@Nonnull Throwable t,
+      @Nonnull Class<? extends Throwable> exceptionClass) {
+    Objects.requireNonNull(t);
+    Objects.requireNonNull(exceptionClass);
+    Throwable second = null;
+    Throwable third = null;
+    VisitedCauses visited = null;
+    int count = 0;
+    for (Throwable curr = t; curr != null;
+        curr = nextCause(t, second, third, curr, ++count, DEFAULT_CAUSE_CHAIN_LIMIT, visited)) {
+      if (count == 1) {
+        second = curr;
+      } else if (count == 2) {
+        third = curr;
+      } else if (count == SHORT_CAUSE_CHAIN_LENGTH) {
+        visited = new VisitedCauses(curr);
+      }
+      if (exceptionClass.isInstance(curr)) {
+        return count;
+      }
+    }
+    return -1;
   }
 
   /**
@@ -108,12 +202,183 @@ public final class RSThrowables {
    */
   public static <X extends Throwable> void unwrapAndThrow(@Nonnull Throwable t,
       @Nonnull Class<? extends X> exceptionClass) throws X {
-    final X ex = findFirstInCauseChain(t, exceptionClass).orElse(null);
+    final X ex = findFirstOrNull(t, exceptionClass);
     if (ex != null) {
       throw ex;
     }
   }
 
+  /**
+   * Unwrap the given Throwable, and throw the unwrapped Exception if it's any of the given types.
+   * The types are checked in order as if {@link #unwrapAndThrow(Throwable, Class)} was called once
+   * per type, but the cause chain is only walked once.<br>
+   * Example usage:
+   *
+   * <pre>
+   * void foo() throws IOException, ParseException {
+   *   try {
+   *     // ...
+   *   } catch (RuntimeException e) {
+   *     unwrapAndThrow(e, IOException.class, ParseException.class);
+   *     throw e;
+   *   }
+   * }
+   * </pre>
+   */
+  public static <X1 extends Throwable, X2 extends Throwable> void unwrapAndThrow(
+      @Nonnull Throwable t, @Nonnull Class<? extends X1> exceptionClass1,
+      @Nonnull Class<? extends X2> exceptionClass2) throws X1, X2 {
+    final Throwable ex = findFirstOfTypes(t, exceptionClass1, exceptionClass2);
+    if (ex != null) {
+      throwIfInstance(ex, exceptionClass1);
+      throwIfInstance(ex, exceptionClass2);
+    }
+  }
+
+  /**
+   * @see #unwrapAndThrow(Throwable, Class, Class)
+   */
+  public static <X1 extends Throwable, X2 extends Throwable, X3 extends Throwable>
+      void unwrapAndThrow(@Nonnull Throwable t, @Nonnull Class<? extends X1> exceptionClass1,
+          @Nonnull Class<? extends X2> exceptionClass2,
+          @Nonnull Class<? extends X3> exceptionClass3) throws X1, X2, X3 {
+    final Throwable ex = findFirstOfTypes(t, exceptionClass1, exceptionClass2, exceptionClass3);
+    if (ex != null) {
+      throwIfInstance(ex, exceptionClass1);
+      throwIfInstance(ex, exceptionClass2);
+      throwIfInstance(ex, exceptionClass3);
+    }
+  }
+
+  /**
+   * @see #unwrapAndThrow(Throwable, Class, Class)
+   */
+  public static <X1 extends Throwable, X2 extends Throwable, X3 extends Throwable,
+      X4 extends Throwable>
+      void unwrapAndThrow(@Nonnull Throwable t, @Nonnull Class<? extends X1> exceptionClass1,
+          @Nonnull Class<? extends X2> exceptionClass2,
+          @Nonnull Class<? extends X3> exceptionClass3,
+          @Nonnull Class<? extends X4> exceptionClass4) throws X1, X2, X3, X4 {
+    final Throwable ex = findFirstOfTypes(t, exceptionClass1, exceptionClass2, exceptionClass3,
+        exceptionClass4);
+    if (ex != null) {
+      throwIfInstance(ex, exceptionClass1);
+      throwIfInstance(ex, exceptionClass2);
+      throwIfInstance(ex, exceptionClass3);
+      throwIfInstance(ex, exceptionClass4);
+    }
+  }
+
+  /**
+   * @see #unwrapAndThrow(Throwable, Class, Class)
+   */
+  public static <X1 extends Throwable, X2 extends Throwable, X3 extends Throwable,
+      X4 extends Throwable, X5 extends Throwable>
+      void unwrapAndThrow(@Nonnull Throwable t, @Nonnull Class<? extends X1> exceptionClass1,
+          @Nonnull Class<? extends X2> exceptionClass2,
+          @Nonnull Class<? extends X3> exceptionClass3,
+          @Nonnull Class<? extends X4> exceptionClass4,
+          @Nonnull Class<? extends X5> exceptionClass5) throws X1, X2, X3, X4, X5 {
+    final Throwable ex = findFirstOfTypes(t, exceptionClass1, exceptionClass2, exceptionClass3,
+        exceptionClass4, exceptionClass5);
+    if (ex != null) {
+      throwIfInstance(ex, exceptionClass1);
+      throwIfInstance(ex, exceptionClass2);
+      throwIfInstance(ex, exceptionClass3);
+      throwIfInstance(ex, exceptionClass4);
+      throwIfInstance(ex, exceptionClass5);
+    }
+  }
+
+  /**
+   * @see #unwrapAndThrow(Throwable, Class, Class)
+   */
+  public static <X1 extends Throwable, X2 extends Throwable, X3 extends Throwable,
+      X4 extends Throwable, X5 extends Throwable, X6 extends Throwable>
+      void unwrapAndThrow(@Nonnull Throwable t, @Nonnull Class<? extends X1> exceptionClass1,
+          @Nonnull Class<? extends X2> exceptionClass2,
+          @Nonnull Class<? extends X3> exceptionClass3,
+          @Nonnull Class<? extends X4> exceptionClass4,
+          @Nonnull Class<? extends X5> exceptionClass5,
+          @Nonnull Class<? extends X6> exceptionClass6) throws X1, X2, X3, X4, X5, X6 {
+    final Throwable ex = findFirstOfTypes(t, exceptionClass1, exceptionClass2, exceptionClass3,
+        exceptionClass4, exceptionClass5, exceptionClass6);
+    if (ex != null) {
+      throwIfInstance(ex, exceptionClass1);
+      throwIfInstance(ex, exceptionClass2);
+      throwIfInstance(ex, exceptionClass3);
+      throwIfInstance(ex, exceptionClass4);
+      throwIfInstance(ex, exceptionClass5);
+      throwIfInstance(ex, exceptionClass6);
+    }
+  }
+
+  /**
+   * Compute the fingerprint with the top 8 frames of each Throwable.
+   *
+   * @see #fingerprint(Throwable, int)
+   */
+  public static long fingerprint(@Nonnull Throwable t) {
+    return fingerprint(t, DEFAULT_FINGERPRINT_FRAME_COUNT);
+  }
+
+  /**
+   * Compute a fingerprint of the given Throwable for grouping repeated occurrences of the same
+   * failure, e.g. for deduplicating logs. The fingerprint covers the class names in the cause chain
+   * with limit 100, and the class names, method names, and line numbers of the top frames of each
+   * Throwable in it. Messages are left out, since they tend to contain IDs.<br>
+   * Nothing is rendered into Strings, and the fingerprint only depends on
+   * {@link String#hashCode()}, so it is stable across JVMs.
+   *
+   * @param maxFramesPerThrowable the max number of frames to use from the top of the stack trace of
+   *        each Throwable. 0 for none.
+   */
+  public static long fingerprint(@Nonnull Throwable t, int maxFramesPerThrowable) {
+    Objects.requireNonNull(t);
+    if (maxFramesPerThrowable < 0) {
+      throw new IllegalArgumentException("Negative maxFramesPerThrowable");
+    }
+    long hash = 0;
+    Throwable second = null;
+    Throwable third = null;
+    VisitedCauses visited = null;
+    int count = 0;
+    for (Throwable curr = t; curr != null;
+        curr = nextCause(t, second, third, curr, ++count, DEFAULT_CAUSE_CHAIN_LIMIT, visited)) {
+      if (count == 1) {
+        second = curr;
+      } else if (count == 2) {
+        third = curr;
+      } else if (count == SHORT_CAUSE_CHAIN_LENGTH) {
+        visited = new VisitedCauses(curr);
+      }
+      hash = mixHash(hash, curr.getClass().getName().hashCode());
+      if (maxFramesPerThrowable == 0) {
+        continue;
+      }
+      final StackTraceElement[] frames = curr.getStackTrace();
+      final int frameCount = Math.min(frames.length, maxFramesPerThrowable);
+      hash = mixHash(hash, frameCount);
+      for (int i = 0; i < frameCount; i++) {
+        final StackTraceElement frame = frames[i];
+        hash = mixHash(hash, frame.getClassName().hashCode());
+        hash = mixHash(hash, frame.getMethodName().hashCode());
+        hash = mixHash(hash, frame.getLineNumber());
+      }
+    }
+    // The finalizer of MurmurHash3, so the bits are spread evenly
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+
+  private static long mixHash(long hash, int value) {
+    return (hash + value) * 0x9e3779b97f4a7c15L;
+  }
+
   /**
    * Inspired by lang3 and jOOL.<br>
    * Throw the given {@link Throwable} if it's a {@link RuntimeException} or an {@link Error}, or
@@ -136,6 +401,174 @@ public final class RSThrowables {
     throw new UndeclaredThrowableException(t);
   }
 
+  private static void checkLimit(int limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("Negative limit");
+    }
+  }
+
+  @Nullable
+  private static <X extends Throwable> X findFirstOrNull(@Nonnull Throwable t,
+      @Nonnull Class<? extends X> exceptionClass) {
+    Objects.requireNonNull(t);
+    Objects.requireNonNull(exceptionClass);
+    Throwable second = null;
+    Throwable third = null;
+    VisitedCauses visited = null;
+    int count = 0;
+    for (Throwable curr = t; curr != null;
+        curr = nextCause(t, second, third, curr, ++count, DEFAULT_CAUSE_CHAIN_LIMIT, visited)) {
+      if (count == 1) {
+        second = curr;
+      } else if (count == 2) {
+        third = curr;
+      } else if (count == SHORT_CAUSE_CHAIN_LENGTH) {
+        visited = new VisitedCauses(curr);
+      }
+      if (exceptionClass.isInstance(curr)) {
+        return exceptionClass.cast(curr);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find the first Throwable in the cause chain that is an instance of the first given class, or
+   * if there is none, the first given class after that, and so on, in one pass.
+   */
+  @Nullable
+  private static Throwable findFirstOfTypes(@Nonnull Throwable t,
+      @Nonnull Class<?>... exceptionClasses) {
+    Objects.requireNonNull(t);
+    for (Class<?> exceptionClass : exceptionClasses) {
+      Objects.requireNonNull(exceptionClass);
+    }
+    Throwable result = null;
+    // The index of the class that the result is an instance of
+    int resultClassIdx = exceptionClasses.length;
+    Throwable second = null;
+    Throwable third = null;
+    VisitedCauses visited = null;
+    int count = 0;
+    for (Throwable curr = t; curr != null && resultClassIdx > 0;
+        curr = nextCause(t, second, third, curr, ++count, DEFAULT_CAUSE_CHAIN_LIMIT, visited)) {
+      if (count == 1) {
+        second = curr;
+      } else if (count == 2) {
+        third = curr;
+      } else if (count == SHORT_CAUSE_CHAIN_LENGTH) {
+        visited = new VisitedCauses(curr);
+      }
+      final Set<Class<?>> superclasses = SUPERCLASSES.get(curr.getClass());
+      // Only the classes that come before the current result matter
+      for (int i = 0; i < resultClassIdx; i++) {
+        if (superclasses.contains(exceptionClasses[i])) {
+          result = curr;
+          resultClassIdx = i;
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  private static <X extends Throwable> void throwIfInstance(@Nonnull Throwable t,
+      @Nonnull Class<? extends X> exceptionClass) throws X {
+    if (exceptionClass.isInstance(t)) {
+      throw exceptionClass.cast(t);
+    }
+  }
+
+  /**
+   * @return the given class and all its superclasses. Interfaces are left out, since the classes
+   *         to check against are always Throwable classes.
+   */
+  private static Set<Class<?>> computeSuperclasses(@Nonnull Class<?> type) {
+    final Set<Class<?>> superclasses = new HashSet<>();
+    for (Class<?> curr = type; curr != null; curr = curr.getSuperclass()) {
+      superclasses.add(curr);
+    }
+    return superclasses;
+  }
+
+  /**
+   * Advance the cause chain. All the traversals go through this method. The chain ends before any
+   * Throwable that is already in the chain, so cycles like A -> B -> A end at their true length.
+   * The first 3 Throwables are kept in local variables by the traversals, and the rest are kept in
+   * a {@link VisitedCauses}, which is only created once the chain is longer than that.
+   *
+   * @param second the second Throwable in the chain, or null if it has not been visited
+   * @param third the third Throwable in the chain, or null if it has not been visited
+   * @param index the index of the cause in the chain
+   * @param visited the Throwables from the fourth one on, or null if it has not been visited
+   * @return the cause of the given Throwable, or null if the chain ends here
+   */
+  @Nullable
+  private static Throwable nextCause(@Nonnull Throwable first, @Nullable Throwable second,
+      @Nullable Throwable third, @Nonnull Throwable curr, int index, int limit,
+      @Nullable VisitedCauses visited) {
+    if (limit > 0 && index >= limit) {
+      // We hit the arbitrary limit. The chain ends here.
+      return null;
+    }
+    final Throwable cause = curr.getCause();
+    if (cause == null || curr == cause || curr.equals(cause)) {
+      // curr does not have a cause or curr is the same as its cause. The chain ends here.
+      return null;
+    }
+    if (cause == first || cause == second || cause == third
+        || (visited != null && !visited.add(cause))) {
+      // The cause has already been visited, which means the chain is a cycle. It ends here.
+      return null;
+    }
+    // curr has a legitimate cause. Advance to the cause.
+    return cause;
+  }
+
+  /**
+   * The Throwables visited in a cause chain from the fourth one on by identity, for detecting
+   * cycles. Small enough chains are checked with an array, and longer ones with a set.
+   */
+  private static final class VisitedCauses {
+
+    private static final int MAX_ARRAY_SIZE = 8;
+
+    // Null once the set is initialized
+    @Nullable
+    private Throwable[] array = new Throwable[MAX_ARRAY_SIZE];
+    private int arraySize;
+    // Only initialized once the array is full
+    @Nullable
+    private Set<Throwable> set;
+
+    VisitedCauses(@Nonnull Throwable fourth) {
+      array[arraySize++] = fourth;
+    }
+
+    /**
+     * @return true if the given Throwable has not been visited before
+     */
+    boolean add(@Nonnull Throwable t) {
+      if (set != null) {
+        return set.add(t);
+      }
+      for (int i = 0; i < arraySize; i++) {
+        if (array[i] == t) {
+          return false;
+        }
+      }
+      if (arraySize < MAX_ARRAY_SIZE) {
+        array[arraySize++] = t;
+        return true;
+      }
+      set = Collections.newSetFromMap(new IdentityHashMap<>());
+      set.addAll(Arrays.asList(array));
+      array = null;
+      return set.add(t);
+    }
+
+  }
+
   private static class CauseChainIterable implements Iterable<Throwable> {
 
     private final Throwable t;
@@ -161,11 +594,20 @@ public final class RSThrowables {
 
   private static class CauseChainIterator implements Iterator<Throwable> {
 
+    private final Throwable first;
+    private final int limit;
     private int count = 0;
+    @Nullable
     private Throwable curr;
-    private final int limit;
+    @Nullable
+    private Throwable second;
+    @Nullable
+    private Throwable third;
+    @Nullable
+    private VisitedCauses visited;
 
     CauseChainIterator(Throwable t, int limit) {
+      this.first = t;
       this.limit = limit;
       this.curr = t;
     }
@@ -188,17 +630,14 @@ public final class RSThrowables {
     }
 
     private void _next() {
-      final Throwable cause = curr.getCause();
-      if (limit > 0 && ++count >= limit) {
-        // We hit the arbitrary limit. The chain ends here.
-        curr = null;
-      } else if (cause == null || curr == cause || curr.equals(cause)) {
-        // curr does not have a cause or curr is the same as its cause. The chain ends here.
-        curr = null;
-      } else {
-        // curr has a legitimate cause. Advance to the cause.
-        curr = cause;
+      if (count == 1) {
+        second = curr;
+      } else if (count == 2) {
+        third = curr;
+      } else if (count == SHORT_CAUSE_CHAIN_LENGTH) {
+        visited = new VisitedCauses(curr);
       }
+      curr = nextCause(first, second, third, curr, ++count, limit, visited);
     }
 
   }
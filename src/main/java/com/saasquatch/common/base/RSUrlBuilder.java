@@ -0,0 +1,175 @@
+package com.saasquatch.common.base;
+
+import java.util.Objects;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * A reusable builder for URLs with encoded path segments and query parameters. Every component is
+ * encoded directly into one growing buffer, so the only allocation for a URL is the final String
+ * once the buffer has grown to fit.<br>
+ * Path segments are always encoded with {@link RSUrlCodec#getEncoder()}, and query parameters are
+ * encoded with the chosen {@link RSUrlCodec.Encoder}.<br>
+ * This class is <em>not</em> thread-safe. It can be reused on the same thread with
+ * {@link #reset()}, which keeps the capacity of the buffer.
+ *
+ * <pre>
+ * RSUrlBuilder.create().append("https://example.com").pathSegment("a b")
+ *     .queryParam("q", "c&amp;d").build(); // https://example.com/a%20b?q=c%26d
+ * </pre>
+ *
+ * @author sli
+ */
+@NotThreadSafe
+public final class RSUrlBuilder {
+
+  // Enough for a typical URL without growing
+  private static final int DEFAULT_CAPACITY = 256;
+
+  private final StringBuilder buf;
+  private final RSUrlCodec.Encoder queryEncoder;
+  // Whether the query part has started
+  private boolean hasQuery;
+
+  private RSUrlBuilder(@Nonnull RSUrlCodec.Encoder queryEncoder, int initialCapacity) {
+    this.buf = new StringBuilder(initialCapacity);
+    this.queryEncoder = queryEncoder;
+  }
+
+  /**
+   * @return a new {@link RSUrlBuilder} that encodes query parameters with
+   *         {@link RSUrlCodec#getEncoder()}
+   */
+  public static RSUrlBuilder create() {
+    return create(RSUrlCodec.getEncoder());
+  }
+
+  /**
+   * @return a new {@link RSUrlBuilder} that encodes query parameters with the given
+   *         {@link RSUrlCodec.Encoder}, e.g. {@link RSUrlCodec#getFormEncoder()}
+   */
+  public static RSUrlBuilder create(@Nonnull RSUrlCodec.Encoder queryEncoder) {
+    return create(queryEncoder, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * @param expectedLength the expected length of the URLs, which is used as the initial capacity
+   *        of the buffer
+   * @return a new {@link RSUrlBuilder} that encodes query parameters with the given
+   *         {@link RSUrlCodec.Encoder}
+   */
+  public static RSUrlBuilder create(@Nonnull RSUrlCodec.Encoder queryEncoder,
+      int expectedLength) {
+    Objects.requireNonNull(queryEncoder);
+    if (expectedLength < 0) {
+      throw new IllegalArgumentException("Negative expectedLength");
+    }
+    return new RSUrlBuilder(queryEncoder, expectedLength);
+  }
+
+  /**
+   * Append the given chars as is without encoding, e.g. {@code "https://example.com"}. If the
+   * chars contain a '?', subsequent query parameters are separated with '&amp;'.
+   */
+  public RSUrlBuilder append(@Nonnull CharSequence raw) {
+    final int len = raw.length();
+    ensureAdditionalCapacity(len);
+    if (!hasQuery) {
+      for (int i = 0; i < len; i++) {
+        if (raw.charAt(i) == '?') {
+          hasQuery = true;
+          break;
+        }
+      }
+    }
+    buf.append(raw);
+    return this;
+  }
+
+  /**
+   * Append an encoded path segment, preceded by a '/' if the URL does not already end with one.
+   *
+   * @throws IllegalStateException if the query part has started
+   */
+  public RSUrlBuilder pathSegment(@Nonnull CharSequence segment) {
+    Objects.requireNonNull(segment);
+    if (hasQuery) {
+      throw new IllegalStateException("Path segments cannot be added after the query");
+    }
+    ensureAdditionalCapacity(segment.length() + 1);
+    final int len = buf.length();
+    if (len == 0 || buf.charAt(len - 1) != '/') {
+      buf.append('/');
+    }
+    RSUrlCodec.getEncoder().encodeTo(segment, buf);
+    return this;
+  }
+
+  /**
+   * Append multiple encoded path segments
+   *
+   * @see #pathSegment(CharSequence)
+   */
+  public RSUrlBuilder pathSegments(@Nonnull CharSequence... segments) {
+    for (CharSequence segment : segments) {
+      pathSegment(segment);
+    }
+    return this;
+  }
+
+  /**
+   * Append an encoded query parameter, preceded by a '?' or a '&amp;'.
+   *
+   * @param value the value of the parameter. If null, only the name is appended without a '='.
+   */
+  public RSUrlBuilder queryParam(@Nonnull CharSequence name, @Nullable CharSequence value) {
+    Objects.requireNonNull(name);
+    ensureAdditionalCapacity(name.length() + (value == null ? 0 : value.length()) + 2);
+    buf.append(hasQuery ? '&' : '?');
+    hasQuery = true;
+    queryEncoder.encodeTo(name, buf);
+    if (value != null) {
+      buf.append('=');
+      queryEncoder.encodeTo(value, buf);
+    }
+    return this;
+  }
+
+  /**
+   * @return the current length of the URL
+   */
+  public int length() {
+    return buf.length();
+  }
+
+  /**
+   * Clear this builder for reuse. The capacity of the buffer is retained.
+   */
+  public RSUrlBuilder reset() {
+    buf.setLength(0);
+    hasQuery = false;
+    return this;
+  }
+
+  /**
+   * @return the URL built so far
+   */
+  public String build() {
+    return buf.toString();
+  }
+
+  @Override
+  public String toString() {
+    return build();
+  }
+
+  /**
+   * Grow the buffer up front for the given number of input chars, assuming they mostly do not need
+   * to be encoded. Components that do need encoding grow the buffer further as needed.
+   */
+  private void ensureAdditionalCapacity(int inputLength) {
+    buf.ensureCapacity(buf.length() + inputLength);
+  }
+
+}
@@ -0,0 +1,325 @@
+package com.saasquatch.common.base;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Util for canonicalizing URLs, e.g. for cache and dedup keys. The normalizations are the syntax
+ * based ones from RFC 3986 section 6.2.2:
+ * <ul>
+ * <li>The scheme and the host are lower cased.</li>
+ * <li>% patterns of unreserved chars are decoded, and the hex digits of all the other % patterns
+ * are upper cased. Invalid % patterns are left alone.</li>
+ * <li>Dot segments are removed from absolute paths. If there is no authority and the resulting
+ * path starts with "//", a "/." is kept in front of it, so the path does not become the
+ * authority.</li>
+ * </ul>
+ * Canonicalizing a canonical URL does not change it. Everything is done in a single pass without
+ * {@link java.net.URI}, and nothing is allocated if the URL is already canonical. The static
+ * methods are thread-safe, and each call uses its own instance of this class.
+ *
+ * @author sli
+ * @see RSUrlCodec
+ */
+public final class RSUrlCanonicalizer {
+
+  private final CharSequence s;
+  /*
+   * The canonicalized output, which is only created once it differs from the input. While this is
+   * null, the output is the input up to the current index.
+   */
+  @Nullable
+  private StringBuilder out;
+
+  private RSUrlCanonicalizer(@Nonnull CharSequence s) {
+    this.s = s;
+  }
+
+  /**
+   * Canonicalize the given URL, which can be absolute or relative.
+   *
+   * @return the canonical URL, which is {@code url.toString()} if the URL is already canonical.
+   *         This means that no copy is made if the input is a canonical String.
+   */
+  public static String canonicalize(@Nonnull CharSequence url) {
+    return new RSUrlCanonicalizer(url).canonicalize();
+  }
+
+  private String canonicalize() {
+    final int len = s.length();
+    int i = 0;
+    final int schemeEnd = indexOfSchemeEnd();
+    if (schemeEnd > 0) {
+      for (; i < schemeEnd; i++) {
+        appendLowerCase(i);
+      }
+      // The ':'
+      keep(i++);
+    }
+    final boolean hasAuthority = i + 1 < len && s.charAt(i) == '/' && s.charAt(i + 1) == '/';
+    if (hasAuthority) {
+      keep(i++);
+      keep(i++);
+      i = authority(i, indexOfAny(i, "/?#"));
+    }
+    final int pathEnd = indexOfAny(i, "?#");
+    if (i < pathEnd && s.charAt(i) == '/') {
+      final int pathOutStart = outLength(i);
+      i = absolutePath(i, pathEnd);
+      if (!hasAuthority && outLength(i) - pathOutStart >= 2
+          && outCharAt(pathOutStart + 1) == '/') {
+        /*
+         * Without an authority, a path starting with "//" would be parsed as an authority, so keep
+         * a "/." in front of it like WHATWG does. See RFC 3986 section 5.2.4. The output always
+         * differs from the input here, since the input path cannot start with "//".
+         */
+        out.insert(pathOutStart, "/.");
+      }
+    } else {
+      // Dot segments are only meaningful relative to a base URL. Leave them alone.
+      if (schemeEnd < 0) {
+        /*
+         * The first segment of a relative reference cannot contain a ':', or it would be parsed as
+         * a scheme. If it does anyway, decoding a % pattern in it may create a scheme, so only the
+         * hex digits are normalized.
+         */
+        final int segEnd = indexOf('/', i, pathEnd);
+        if (indexOf(':', i, segEnd) < segEnd) {
+          i = normalizeEscapes(i, segEnd, false, false);
+        }
+      }
+      i = normalizeEscapes(i, pathEnd, false);
+    }
+    // The query and the fragment
+    normalizeEscapes(i, len, false);
+    return out == null ? s.toString() : out.toString();
+  }
+
+  /**
+   * @return the index of the ':' that ends the scheme, or -1 if there is no scheme
+   */
+  private int indexOfSchemeEnd() {
+    final int len = s.length();
+    if (len == 0 || !isAsciiAlpha(s.charAt(0))) {
+      return -1;
+    }
+    for (int i = 1; i < len; i++) {
+      final char c = s.charAt(i);
+      if (c == ':') {
+        return i;
+      }
+      if (!isAsciiAlpha(c) && !(c >= '0' && c <= '9') && c != '+' && c != '-' && c != '.') {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Normalize the authority between the given indices, where the host and the port are lower cased
+   * and the userinfo is not.
+   *
+   * @return the end index
+   */
+  private int authority(int start, int end) {
+    int hostStart = start;
+    for (int i = end - 1; i >= start; i--) {
+      if (s.charAt(i) == '@') {
+        hostStart = i + 1;
+        break;
+      }
+    }
+    normalizeEscapes(start, hostStart, false);
+    return normalizeEscapes(hostStart, end, true);
+  }
+
+  /**
+   * Normalize an absolute path between the given indices segment by segment, removing the dot
+   * segments with the algorithm from RFC 3986 section 5.2.4.
+   *
+   * @return the end index
+   */
+  private int absolutePath(int start, int end) {
+    final int pathOutStart = outLength(start);
+    // The leading '/'
+    keep(start);
+    int i = start + 1;
+    while (true) {
+      final int segEnd = indexOf('/', i, end);
+      final int segOutStart = outLength(i);
+      normalizeEscapes(i, segEnd, false);
+      // Check the normalized segment, since "%2E" is a dot as well
+      final int segOutLen = outLength(segEnd) - segOutStart;
+      final boolean dot = segOutLen == 1 && outCharAt(segOutStart) == '.';
+      final boolean dotDot = segOutLen == 2 && outCharAt(segOutStart) == '.'
+          && outCharAt(segOutStart + 1) == '.';
+      if (dot || dotDot) {
+        materialize(segEnd);
+        // Remove the dot segment and leave the output ending with a '/'
+        int truncateIdx = segOutStart;
+        if (dotDot && segOutStart - 1 > pathOutStart) {
+          // Also remove the previous segment along with its trailing '/'
+          truncateIdx = out.lastIndexOf("/", segOutStart - 2) + 1;
+        }
+        out.setLength(truncateIdx);
+        if (segEnd == end) {
+          return end;
+        }
+        // Skip the '/' after the dot segment, since the output already ends with one
+        i = segEnd + 1;
+      } else {
+        if (segEnd == end) {
+          return end;
+        }
+        keep(segEnd);
+        i = segEnd + 1;
+      }
+    }
+  }
+
+  /**
+   * Normalize the % patterns between the given indices.
+   *
+   * @param lowerCase whether the chars, including decoded unreserved chars, should be lower cased
+   * @return the end index
+   */
+  private int normalizeEscapes(int start, int end, boolean lowerCase) {
+    return normalizeEscapes(start, end, lowerCase, true);
+  }
+
+  /**
+   * Normalize the % patterns between the given indices.
+   *
+   * @param lowerCase whether the chars, including decoded unreserved chars, should be lower cased
+   * @param decodeUnreserved whether the % patterns of unreserved chars should be decoded
+   * @return the end index
+   */
+  private int normalizeEscapes(int start, int end, boolean lowerCase, boolean decodeUnreserved) {
+    int i = start;
+    while (i < end) {
+      final char c = s.charAt(i);
+      if (c != '%' || i + 2 >= end) {
+        if (lowerCase) {
+          appendLowerCase(i);
+        } else {
+          keep(i);
+        }
+        i++;
+        continue;
+      }
+      final char uc = s.charAt(i + 1);
+      final char lc = s.charAt(i + 2);
+      final int uv = RSUrlCodec.asciiHexValue(uc);
+      final int lv = RSUrlCodec.asciiHexValue(lc);
+      if (uv == -1 || lv == -1) {
+        // Invalid % pattern. Leave the '%' alone, since the digits can start a new % pattern.
+        keep(i++);
+        continue;
+      }
+      final int b = (uv << 4) | lv;
+      if (decodeUnreserved && RSUrlCodec.isUnreserved(b) && !completesEscape(b, outLength(i))) {
+        materialize(i);
+        out.append(lowerCase ? toLowerCase((char) b) : (char) b);
+      } else {
+        final char ucCanonical = RSUrlCodec.hexDigit(uv, true);
+        final char lcCanonical = RSUrlCodec.hexDigit(lv, true);
+        if (uc == ucCanonical && lc == lcCanonical) {
+          keep(i);
+          keep(i + 1);
+          keep(i + 2);
+        } else {
+          materialize(i);
+          out.append('%').append(ucCanonical).append(lcCanonical);
+        }
+      }
+      i += 3;
+    }
+    return end;
+  }
+
+  /**
+   * @return whether the decoded char would form a new % pattern with an invalid % pattern that
+   *         precedes it in the output, in which case it should not be decoded, so canonicalizing a
+   *         canonical URL does not change it.
+   */
+  private boolean completesEscape(int b, int outLen) {
+    if (RSUrlCodec.asciiHexValue(b) == -1) {
+      return false;
+    }
+    if (outLen >= 1 && outCharAt(outLen - 1) == '%') {
+      return true;
+    }
+    return outLen >= 2 && outCharAt(outLen - 2) == '%'
+        && RSUrlCodec.asciiHexValue(outCharAt(outLen - 1)) != -1;
+  }
+
+  private void appendLowerCase(int i) {
+    final char c = s.charAt(i);
+    final char lower = toLowerCase(c);
+    if (lower == c) {
+      keep(i);
+    } else {
+      materialize(i);
+      out.append(lower);
+    }
+  }
+
+  /**
+   * Output the char at the given index as is
+   */
+  private void keep(int i) {
+    if (out != null) {
+      out.append(s.charAt(i));
+    }
+  }
+
+  /**
+   * Start the output buffer if it has not been started, given that the output is still identical
+   * to the input up to the given index.
+   */
+  private void materialize(int i) {
+    if (out == null) {
+      out = new StringBuilder(s.length());
+      out.append(s, 0, i);
+    }
+  }
+
+  /**
+   * @param i the current index of the input
+   */
+  private int outLength(int i) {
+    return out == null ? i : out.length();
+  }
+
+  private char outCharAt(int idx) {
+    return out == null ? s.charAt(idx) : out.charAt(idx);
+  }
+
+  private int indexOf(char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (s.charAt(i) == c) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  private int indexOfAny(int start, @Nonnull String chars) {
+    final int len = s.length();
+    for (int i = start; i < len; i++) {
+      if (chars.indexOf(s.charAt(i)) >= 0) {
+        return i;
+      }
+    }
+    return len;
+  }
+
+  private static boolean isAsciiAlpha(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static char toLowerCase(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+}
@@ -3,14 +3,38 @@ package com.saasquatch.common.base;
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import com.saasquatch.common.collect.RSCollectors;
 
@@ -24,6 +48,28 @@ import com.saasquatch.common.collect.RSCollectors;
  */
 public final class RSUrlCodec {
 
+  // Every byte of the word is a '%'
+  private static final long PERCENT_WORD = 0x2525252525252525L;
+  // Every byte of the word is a '+'
+  private static final long PLUS_WORD = 0x2B2B2B2B2B2B2B2BL;
+  // The chunk size for streaming bytes
+  private static final int BYTE_CHUNK_SIZE = 8192;
+  // The number of inputs each task of a parallel batch handles
+  private static final int BATCH_CHUNK_SIZE = 1024;
+  // Lookup table for the values of ASCII hex digits, with -1 for non hex digits
+  private static final byte[] HEX_VALUES = new byte[128];
+
+  static {
+    Arrays.fill(HEX_VALUES, (byte) -1);
+    for (int i = 0; i < 10; i++) {
+      HEX_VALUES['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; i++) {
+      HEX_VALUES['a' + i] = (byte) (10 + i);
+      HEX_VALUES['A' + i] = (byte) (10 + i);
+    }
+  }
+
   private RSUrlCodec() {}
 
   /**
@@ -96,15 +142,25 @@ public final class RSUrlCodec {
     private static final Set<Charset> SINGLE_BYTE_ASCII_SUPERSETS =
         Stream.of(UTF_8, US_ASCII, ISO_8859_1).collect(RSCollectors.toUnmodifiableSet());
 
+    // The byte Charset#encode uses to replace malformed or unmappable input in our charsets
+    private static final int REPLACEMENT_BYTE = '?';
+    // Upper bound for the estimated capacity of result buffers
+    private static final int MAX_ESTIMATED_CAPACITY = Integer.MAX_VALUE - 8;
+
     private static final Encoder RFC3986 =
-        new Encoder(UTF_8, InternalSafeCharPredicate.RFC3986_UNRESERVED, false, true);
+        new Encoder(UTF_8, AsciiCharSet.RFC3986_UNRESERVED, false, true);
     private static final Encoder FORM =
-        new Encoder(UTF_8, InternalSafeCharPredicate.WWW_FORM_URLENCODED, true, true);
+        new Encoder(UTF_8, AsciiCharSet.WWW_FORM_URLENCODED, true, true);
 
     private final Charset charset;
     private final IntPredicate safeCharPredicate;
     private final boolean spaceToPlus;
     private final boolean upperCase;
+    // Whether encodeOptimal can be used
+    private final boolean optimal;
+    private final boolean utf8;
+    // Chars below this limit are encoded into one identical byte
+    private final char singleByteLimit;
 
     private Encoder(@Nonnull Charset charset, @Nonnull IntPredicate safeCharPredicate,
         boolean spaceToPlus, boolean upperCase) {
@@ -112,6 +168,11 @@ public final class RSUrlCodec {
       this.safeCharPredicate = safeCharPredicate;
       this.spaceToPlus = spaceToPlus;
       this.upperCase = upperCase;
+      // Only trust AsciiCharSet, which is guaranteed to never contain non-ASCII chars
+      this.optimal = SINGLE_BYTE_ASCII_SUPERSETS.contains(charset)
+          && safeCharPredicate instanceof AsciiCharSet;
+      this.utf8 = UTF_8.equals(charset);
+      this.singleByteLimit = ISO_8859_1.equals(charset) ? (char) 0x100 : (char) 0x80;
     }
 
     /**
@@ -134,7 +195,9 @@ public final class RSUrlCodec {
      *        <li>The resulting encoded strings only contain ASCII characters, which is the RFC
      *        standard for URLs.</li>
      *        </ul>
-     *        Failing to meet these expectations may cause unexpected behaviors.
+     *        Failing to meet these expectations may cause unexpected behaviors.<br>
+     *        If the safe chars are a fixed set of ASCII chars, {@link #withSafeChars(CharSequence)}
+     *        should be preferred, since it is significantly faster.
      * @return a new {@link Encoder} with the specified predicate
      */
     public Encoder withSafeCharPredicate(@Nonnull IntPredicate safeCharPredicate) {
@@ -143,6 +206,44 @@ public final class RSUrlCodec {
       return new Encoder(this.charset, safeCharPredicate, this.spaceToPlus, this.upperCase);
     }
 
+    /**
+     * @param safeChars all the ASCII characters that are safe and do not need to be encoded. The
+     *        chars are compiled into a lookup table, which keeps the optimal encoding path.
+     * @return a new {@link Encoder} with the specified safe chars
+     * @throws IllegalArgumentException if any of the chars is not ASCII
+     * @see #withSafeCharPredicate(IntPredicate)
+     */
+    public Encoder withSafeChars(@Nonnull CharSequence safeChars) {
+      final AsciiCharSet safeCharSet = AsciiCharSet.of(safeChars);
+      if (safeCharSet.equals(this.safeCharPredicate)) {
+        return this;
+      }
+      return new Encoder(this.charset, safeCharSet, this.spaceToPlus, this.upperCase);
+    }
+
+    /**
+     * Example usage: {@code RSUrlCodec.getEncoder().withAdditionalSafeChars("/:")}
+     *
+     * @param additionalSafeChars ASCII characters that are safe in addition to the safe chars of
+     *        this {@link Encoder}
+     * @return a new {@link Encoder} with the additional safe chars
+     * @throws IllegalArgumentException if any of the chars is not ASCII
+     * @throws IllegalStateException if this {@link Encoder} uses a custom safeCharPredicate
+     * @see #withSafeChars(CharSequence)
+     */
+    public Encoder withAdditionalSafeChars(@Nonnull CharSequence additionalSafeChars) {
+      if (!(this.safeCharPredicate instanceof AsciiCharSet)) {
+        throw new IllegalStateException("Additional safe chars cannot be added to a custom "
+            + "safeCharPredicate");
+      }
+      final AsciiCharSet safeCharSet =
+          ((AsciiCharSet) this.safeCharPredicate).union(AsciiCharSet.of(additionalSafeChars));
+      if (safeCharSet.equals(this.safeCharPredicate)) {
+        return this;
+      }
+      return new Encoder(this.charset, safeCharSet, this.spaceToPlus, this.upperCase);
+    }
+
     /**
      * @param spaceToPlus whether ' ' should be encoded to '+'. If false, ' ' characters are either
      *        left alone or encoded depending on the safeCharPredicate. Note that the
@@ -182,69 +283,333 @@ public final class RSUrlCodec {
 
     /**
      * URL encode
+     *
+     * @return the encoded String, which is {@code s.toString()} if nothing needs to be encoded.
+     *         This means that no copy is made if the input is a String without unsafe chars.
      */
     public String encode(@Nonnull CharSequence s) {
-      // Only trust InternalSafeCharPredicate
-      if (SINGLE_BYTE_ASCII_SUPERSETS.contains(charset)
-          && safeCharPredicate instanceof InternalSafeCharPredicate) {
-        return encodeOptimal(s);
+      return encode(s, null);
+    }
+
+    /**
+     * @param scratchBuf the buffer to build the result in, or null to allocate a new one
+     */
+    private String encode(@Nonnull CharSequence s, @Nullable StringBuilder scratchBuf) {
+      final int len = s.length();
+      final int firstUnsafeIdx = indexOfFirstUnsafe(s);
+      if (firstUnsafeIdx == len) {
+        // Nothing needs to be encoded
+        return s.toString();
+      }
+      final StringBuilder resultBuf;
+      if (scratchBuf == null) {
+        // Assume every char from the first unsafe char on needs to be turned into 3 chars
+        final long estimatedLen = firstUnsafeIdx + (len - firstUnsafeIdx) * 3L;
+        resultBuf = new StringBuilder((int) Math.min(estimatedLen, MAX_ESTIMATED_CAPACITY));
+      } else {
+        resultBuf = scratchBuf;
+        resultBuf.setLength(0);
+      }
+      resultBuf.append(s, 0, firstUnsafeIdx);
+      try {
+        encodeRemaining(s, firstUnsafeIdx, resultBuf);
+      } catch (IOException e) {
+        // StringBuilder never throws IOException
+        throw new AssertionError(e);
+      }
+      return resultBuf.toString();
+    }
+
+    /**
+     * URL encode all the inputs in order with one reusable buffer.
+     *
+     * @return an unmodifiable {@link List} of the encoded Strings
+     * @see #encode(CharSequence)
+     */
+    public List<String> encodeAll(@Nonnull List<? extends CharSequence> inputs) {
+      return Collections.unmodifiableList(Arrays.asList(
+          transformAll(inputs, StringBuilder::new, this::encode, null)));
+    }
+
+    /**
+     * URL encode all the inputs, splitting them into chunks that are picked up by workers running
+     * on the given {@link Executor}, e.g. {@link ForkJoinPool#commonPool()}. Each worker reuses one
+     * buffer, and small batches are encoded in the calling thread. This method blocks until all the
+     * inputs have been encoded.
+     *
+     * @return an unmodifiable {@link List} of the encoded Strings in the order of the inputs
+     * @see #encodeAll(List)
+     */
+    public List<String> encodeAll(@Nonnull List<? extends CharSequence> inputs,
+        @Nonnull Executor executor) {
+      Objects.requireNonNull(executor);
+      return Collections.unmodifiableList(Arrays.asList(
+          transformAll(inputs, StringBuilder::new, this::encode, executor)));
+    }
+
+    /**
+     * @return a new array of the encoded Strings
+     * @see #encodeAll(List)
+     */
+    public String[] encodeAll(@Nonnull CharSequence[] inputs) {
+      return transformAll(Arrays.asList(inputs), StringBuilder::new, this::encode, null);
+    }
+
+    /**
+     * @return a new array of the encoded Strings
+     * @see #encodeAll(List, Executor)
+     */
+    public String[] encodeAll(@Nonnull CharSequence[] inputs, @Nonnull Executor executor) {
+      Objects.requireNonNull(executor);
+      return transformAll(Arrays.asList(inputs), StringBuilder::new, this::encode, executor);
+    }
+
+    /**
+     * URL encode directly into the given {@link Appendable} without any intermediate buffers.
+     * Useful for building a URL with multiple encoded components in one reusable
+     * {@link StringBuilder}.
+     *
+     * @return the given {@link Appendable}
+     * @throws UncheckedIOException if the {@link Appendable} throws an {@link IOException}
+     */
+    public <A extends Appendable> A encodeTo(@Nonnull CharSequence s, @Nonnull A out) {
+      Objects.requireNonNull(s);
+      Objects.requireNonNull(out);
+      try {
+        encodeTo0(s, out);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return out;
+    }
+
+    /**
+     * URL encode directly into the given {@link CharBuffer} starting at its current position.
+     *
+     * @return the given {@link CharBuffer}
+     * @throws BufferOverflowException if the {@link CharBuffer} does not have enough space, in
+     *         which case the content of the {@link CharBuffer} after its original position is
+     *         undefined
+     */
+    public CharBuffer encodeTo(@Nonnull CharSequence s, @Nonnull CharBuffer out) {
+      Objects.requireNonNull(s);
+      Objects.requireNonNull(out);
+      try {
+        encodeTo0(s, out);
+      } catch (IOException e) {
+        // CharBuffer never throws IOException
+        throw new AssertionError(e);
+      }
+      return out;
+    }
+
+    /**
+     * URL encode bytes that are already in their {@link Charset}, e.g. the raw bytes of a form
+     * body. The {@link Charset} of this {@link Encoder} is not used. Every byte is tested with the
+     * safeCharPredicate as an unsigned value.
+     *
+     * @return the encoded bytes
+     */
+    public byte[] encodeBytes(@Nonnull byte[] bytes) {
+      return encodeBytes(ByteBuffer.wrap(bytes)).array();
+    }
+
+    /**
+     * URL encode the remaining bytes of the given {@link ByteBuffer}, whose position will be
+     * advanced to its limit.
+     *
+     * @return a new {@link ByteBuffer} containing exactly the encoded bytes
+     * @see #encodeBytes(byte[])
+     */
+    public ByteBuffer encodeBytes(@Nonnull ByteBuffer bytes) {
+      int encodedLen = 0;
+      for (int i = bytes.position(); i < bytes.limit(); i++) {
+        encodedLen += isEncodedAsIs(bytes.get(i) & 0xFF) ? 1 : 3;
+      }
+      final ByteBuffer resultBuf = ByteBuffer.allocate(encodedLen);
+      encodeBytes(bytes, resultBuf);
+      resultBuf.flip();
+      return resultBuf;
+    }
+
+    /**
+     * URL encode all the bytes from the given {@link ReadableByteChannel} into the given
+     * {@link WritableByteChannel} in fixed-size chunks, so the memory usage is bounded regardless of
+     * the size of the input. Neither channel is closed.
+     *
+     * @return the number of bytes written
+     * @see #encodeBytes(byte[])
+     */
+    public long encodeBytes(@Nonnull ReadableByteChannel in, @Nonnull WritableByteChannel out)
+        throws IOException {
+      Objects.requireNonNull(in);
+      Objects.requireNonNull(out);
+      final ByteBuffer inBuf = ByteBuffer.allocate(BYTE_CHUNK_SIZE);
+      // One byte can at most be turned into 3 bytes
+      final ByteBuffer outBuf = ByteBuffer.allocate(BYTE_CHUNK_SIZE * 3);
+      long written = 0;
+      while (in.read(inBuf) >= 0) {
+        inBuf.flip();
+        encodeBytes(inBuf, outBuf);
+        inBuf.clear();
+        written += writeFully(outBuf, out);
+      }
+      return written;
+    }
+
+    /**
+     * @see #encodeBytes(ReadableByteChannel, WritableByteChannel)
+     */
+    public long encodeBytes(@Nonnull InputStream in, @Nonnull WritableByteChannel out)
+        throws IOException {
+      return encodeBytes(Channels.newChannel(in), out);
+    }
+
+    private void encodeBytes(@Nonnull ByteBuffer in, @Nonnull ByteBuffer out) {
+      while (in.hasRemaining()) {
+        final int b = in.get() & 0xFF;
+        if (safeCharPredicate.test(b)) {
+          out.put((byte) b);
+        } else if (spaceToPlus && b == ' ') {
+          out.put((byte) '+');
+        } else {
+          out.put((byte) '%');
+          out.put((byte) hexDigit(b >> 4, upperCase));
+          out.put((byte) hexDigit(b, upperCase));
+        }
+      }
+    }
+
+    private boolean isEncodedAsIs(int b) {
+      return safeCharPredicate.test(b) || (spaceToPlus && b == ' ');
+    }
+
+    private void encodeTo0(@Nonnull CharSequence s, @Nonnull Appendable out) throws IOException {
+      final int firstUnsafeIdx = indexOfFirstUnsafe(s);
+      // Copy the leading safe chars in bulk
+      out.append(s, 0, firstUnsafeIdx);
+      encodeRemaining(s, firstUnsafeIdx, out);
+    }
+
+    /**
+     * @return the index of the first char that needs to be encoded, or the length of the input if
+     *         nothing needs to be encoded
+     */
+    private int indexOfFirstUnsafe(@Nonnull CharSequence s) {
+      final int len = s.length();
+      for (int i = 0; i < len; i++) {
+        if (!safeCharPredicate.test(s.charAt(i))) {
+          return i;
+        }
+      }
+      return len;
+    }
+
+    private void encodeRemaining(@Nonnull CharSequence s, int start, @Nonnull Appendable out)
+        throws IOException {
+      if (start == s.length()) {
+        return;
+      }
+      if (optimal) {
+        encodeOptimal(s, start, out);
       } else {
-        return encodeNonOptimal(s);
+        encodeNonOptimal(s, start, out);
       }
     }
 
     /**
      * A highly optimized version of doing URL encoding that only works if:
      * <ul>
-     * <li>The {@link Charset} is single-byte and is a superset of ASCII</li>
+     * <li>The {@link Charset} is a superset of ASCII that we know how to encode by hand</li>
      * <li>The safeCharPredicate always encodes non-ASCII characters</li>
      * </ul>
      * If any of the conditions above is not met, this method does not work. Instead,
-     * {@link #encodeNonOptimal(CharSequence)}, which is slightly slower, should be used.
-     */
-    private String encodeOptimal(@Nonnull CharSequence s) {
-      final ByteBuffer bytes = charset.encode(CharBuffer.wrap(s));
-      // One byte can at most be turned into 3 chars
-      final CharBuffer resultBuf = CharBuffer.allocate(bytes.remaining() * 3);
-      while (bytes.hasRemaining()) {
-        final int b = bytes.get() & 0xFF;
-        if (safeCharPredicate.test(b)) {
-          resultBuf.put((char) b);
-        } else if (spaceToPlus && b == ' ') {
-          resultBuf.put('+');
+     * {@link #encodeNonOptimal(CharSequence, int, Appendable)}, which is slightly slower, should be used.
+     * <br>
+     * The chars are turned into bytes by hand instead of going through {@link Charset#encode}, and
+     * the behavior for malformed and unmappable input is identical to {@link Charset#encode},
+     * which replaces them with '?'.
+     */
+    private void encodeOptimal(@Nonnull CharSequence s, int start, @Nonnull Appendable out)
+        throws IOException {
+      // Guaranteed by the optimal flag
+      final AsciiCharSet safeChars = (AsciiCharSet) safeCharPredicate;
+      final int len = s.length();
+      for (int i = start; i < len; i++) {
+        // Skip over the run of safe chars and copy it in bulk
+        final int runEnd = safeChars.indexOfFirstNonMember(s, i, len);
+        if (runEnd > i) {
+          out.append(s, i, runEnd);
+          if (runEnd == len) {
+            return;
+          }
+          i = runEnd;
+        }
+        final char c = s.charAt(i);
+        if (c < singleByteLimit) {
+          encodeByte(c, out);
+        } else if (utf8 && !Character.isSurrogate(c)) {
+          if (c < 0x800) {
+            encodeByte(0xC0 | (c >> 6), out);
+          } else {
+            encodeByte(0xE0 | (c >> 12), out);
+            encodeByte(0x80 | ((c >> 6) & 0x3F), out);
+          }
+          encodeByte(0x80 | (c & 0x3F), out);
+        } else if (Character.isHighSurrogate(c) && i + 1 < len
+            && Character.isLowSurrogate(s.charAt(i + 1))) {
+          // A valid surrogate pair
+          final char low = s.charAt(++i);
+          if (utf8) {
+            final int cp = Character.toCodePoint(c, low);
+            encodeByte(0xF0 | (cp >> 18), out);
+            encodeByte(0x80 | ((cp >> 12) & 0x3F), out);
+            encodeByte(0x80 | ((cp >> 6) & 0x3F), out);
+            encodeByte(0x80 | (cp & 0x3F), out);
+          } else {
+            // Unmappable. The pair is replaced as a whole.
+            encodeByte(REPLACEMENT_BYTE, out);
+          }
         } else {
-          resultBuf.put('%');
-          resultBuf.put(hexDigit(b >> 4, upperCase));
-          resultBuf.put(hexDigit(b, upperCase));
+          // Malformed (unpaired surrogate) or unmappable
+          encodeByte(REPLACEMENT_BYTE, out);
         }
       }
-      resultBuf.flip();
-      return resultBuf.toString();
+    }
+
+    private void encodeByte(int b, @Nonnull Appendable out) throws IOException {
+      if (safeCharPredicate.test(b)) {
+        out.append((char) b);
+      } else if (spaceToPlus && b == ' ') {
+        out.append('+');
+      } else {
+        out.append('%');
+        out.append(hexDigit(b >> 4, upperCase));
+        out.append(hexDigit(b, upperCase));
+      }
     }
 
     /**
      * A more compatible and resilient version of doing URL encoding that handles weird
      * {@link Charset}s and safeCharPredicates that are not standards compliant.
      *
-     * @see #encodeOptimal(CharSequence)
+     * @see #encodeOptimal(CharSequence, int, Appendable)
      */
-    private String encodeNonOptimal(@Nonnull CharSequence s) {
-      final CharBuffer chars = CharBuffer.wrap(s);
-      /*
-       * Not using CharBuffer since it's hard to predict how many characters we will end up having
-       * depending on the charsets.
-       */
-      final StringBuilder resultBuf = new StringBuilder(chars.remaining() << 1);
+    private void encodeNonOptimal(@Nonnull CharSequence s, int start, @Nonnull Appendable out)
+        throws IOException {
+      final CharBuffer chars = CharBuffer.wrap(s, start, s.length());
       // The buffer used for encoding sequences. It will be reused for all the encoding sequences.
       final StringBuilder encBuf = new StringBuilder();
+      // The buffer for the encoded bytes, which is only initialized once it's needed
+      ByteBuffer encBytes = null;
       while (chars.hasRemaining()) {
         final char c = chars.get();
         if (safeCharPredicate.test(c)) {
           // Got a safe char. Output it.
-          resultBuf.append(c);
+          out.append(c);
         } else if (spaceToPlus && c == ' ') {
           // Got a space and this encoder is set to encode space to plus
-          resultBuf.append('+');
+          out.append('+');
         } else {
           /*
            * We hit a char that needs to be encoded. Keep going until we hit another safe char or
@@ -262,16 +627,76 @@ public final class RSUrlCodec {
             encBuf.append(encChar);
           } while (chars.hasRemaining());
           // Encode the sequence together
-          final ByteBuffer encBytes = charset.encode(CharBuffer.wrap(encBuf));
+          encBytes = encodeSequence(encBuf, encBytes);
           while (encBytes.hasRemaining()) {
             final byte b = encBytes.get();
-            resultBuf.append('%');
-            resultBuf.append(hexDigit(b >> 4, upperCase));
-            resultBuf.append(hexDigit(b, upperCase));
+            out.append('%');
+            out.append(hexDigit(b >> 4, upperCase));
+            out.append(hexDigit(b, upperCase));
           }
         }
       }
-      return resultBuf.toString();
+    }
+
+    /**
+     * Encode the sequence with the pooled {@link CharsetEncoder} of the current thread into the
+     * given buffer, or a bigger one if it does not fit. The result is the same as
+     * {@link Charset#encode(CharBuffer)}, which replaces malformed and unmappable input.
+     *
+     * @param encBytes the buffer to reuse, or null to allocate a new one
+     * @return the flipped buffer containing the encoded bytes
+     */
+    private ByteBuffer encodeSequence(@Nonnull CharSequence seq, @Nullable ByteBuffer encBytes) {
+      final CharsetEncoder encoder = RSCharsetCoders.encoder(charset, CodingErrorAction.REPLACE);
+      final int estimatedLen = (int) Math.ceil(seq.length() * (double) encoder.maxBytesPerChar());
+      ByteBuffer resultBuf = encBytes == null || encBytes.capacity() < estimatedLen
+          ? ByteBuffer.allocate(estimatedLen)
+          : encBytes;
+      final CharBuffer chars = CharBuffer.wrap(seq);
+      while (true) {
+        resultBuf.clear();
+        CoderResult cr = encoder.encode(chars, resultBuf, true);
+        if (!cr.isOverflow()) {
+          cr = encoder.flush(resultBuf);
+        }
+        if (!cr.isOverflow()) {
+          // Nothing else is possible with CodingErrorAction.REPLACE
+          break;
+        }
+        // Start over with a bigger buffer. Stateful charsets can add bytes when flushing.
+        resultBuf = ByteBuffer.allocate(resultBuf.capacity() * 2 + 16);
+        chars.rewind();
+        encoder.reset();
+      }
+      resultBuf.flip();
+      return resultBuf;
+    }
+
+    /**
+     * Two {@link Encoder}s are equal if they have the same config. A custom safeCharPredicate is
+     * compared with its own equals method.
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Encoder)) {
+        return false;
+      }
+      final Encoder other = (Encoder) obj;
+      return this.charset.equals(other.charset)
+          && this.safeCharPredicate.equals(other.safeCharPredicate)
+          && this.spaceToPlus == other.spaceToPlus && this.upperCase == other.upperCase;
+    }
+
+    @Override
+    public int hashCode() {
+      // Computed by hand without varargs, since this is used for cache keys
+      int h = charset.hashCode();
+      h = h * 31 + safeCharPredicate.hashCode();
+      h = h * 31 + Boolean.hashCode(spaceToPlus);
+      return h * 31 + Boolean.hashCode(upperCase);
     }
 
   }
@@ -292,11 +717,14 @@ public final class RSUrlCodec {
     private final Charset charset;
     private final boolean plusToSpace;
     private final boolean strict;
+    // Whether UTF-8 can be decoded by hand
+    private final boolean utf8;
 
     private Decoder(@Nonnull Charset charset, boolean plusToSpace, boolean strict) {
       this.charset = charset;
       this.plusToSpace = plusToSpace;
       this.strict = strict;
+      this.utf8 = UTF_8.equals(charset);
     }
 
     /**
@@ -346,89 +774,716 @@ public final class RSUrlCodec {
 
     /**
      * URL decode
+     *
+     * @return the decoded String, which is {@code s.toString()} if nothing needs to be decoded.
+     *         This means that no copy is made if the input is a String without encoded chars.
      */
     public String decode(@Nonnull CharSequence s) {
-      final CharBuffer chars = CharBuffer.wrap(s);
-      final CharBuffer resultBuf = CharBuffer.allocate(s.length());
+      return decode(s, 0, s.length());
+    }
+
+    /**
+     * URL decode the chars from start (inclusive) to end (exclusive) without making a copy of the
+     * range first.
+     *
+     * @see #decode(CharSequence)
+     */
+    String decode(@Nonnull CharSequence s, int start, int end) {
+      return decode(s, start, end, null, null);
+    }
+
+    /**
+     * URL decode the chars from start (inclusive) to end (exclusive) into the canonical instance
+     * from the given {@link RSStringInterner}, if any.
+     *
+     * @see #decode(CharSequence, RSStringInterner)
+     */
+    String decode(@Nonnull CharSequence s, int start, int end,
+        @Nullable RSStringInterner interner) {
+      return decode(s, start, end, null, interner);
+    }
+
+    /**
+     * URL decode and return the canonical instance of the result from the given
+     * {@link RSStringInterner}. A new String is only created if the interner does not have the
+     * result, including when nothing needs to be decoded and the input is not a String.
+     *
+     * @see #decode(CharSequence)
+     */
+    public String decode(@Nonnull CharSequence s, @Nonnull RSStringInterner interner) {
+      Objects.requireNonNull(interner);
+      return decode(s, 0, s.length(), null, interner);
+    }
+
+    /**
+     * @param batchBufs the buffers to reuse, or null to allocate new ones
+     * @param interner the interner for the result, or null to not intern
+     */
+    private String decode(@Nonnull CharSequence s, int start, int end,
+        @Nullable BatchBuffers batchBufs, @Nullable RSStringInterner interner) {
+      final int firstEncodedIdx = end == s.length() && s instanceof String
+          ? indexOfFirstEncoded((String) s, start)
+          : indexOfFirstEncoded(s, start, end);
+      if (firstEncodedIdx == end) {
+        // Nothing needs to be decoded
+        if (interner != null) {
+          return interner.intern(s, start, end);
+        }
+        return s.subSequence(start, end).toString();
+      }
+      final StringBuilder resultBuf;
+      if (batchBufs == null) {
+        // The decoded result is never longer than the input
+        resultBuf = new StringBuilder(end - start);
+      } else {
+        resultBuf = batchBufs.resultBuf;
+        resultBuf.setLength(0);
+      }
+      resultBuf.append(s, start, firstEncodedIdx);
+      // Only initialized if we need to go through the CharsetDecoder
+      CharsetRunDecoder charsetRunDecoder =
+          batchBufs == null ? null : batchBufs.charsetRunDecoder;
       /*
-       * Buffer used for decoding one set of % patterns. Assuming the entire input only consists of
-       * % patterns, we only need its length / 3 bytes. This will be reused for all the patterns.
+       * If the range goes to the end of a String, the runs of chars that do not need decoding are
+       * found with the String.indexOf intrinsic. The next indices of '%' and '+' are remembered, so
+       * the String is only scanned once for each of them.
        */
-      final ByteBuffer decBuf = ByteBuffer.allocate(s.length() / 3);
-      mainCharsLoop: while (chars.hasRemaining()) {
-        final char c = chars.get();
+      final String str = end == s.length() && s instanceof String ? (String) s : null;
+      int nextPercentIdx = firstEncodedIdx;
+      int nextPlusIdx = firstEncodedIdx;
+      int i = firstEncodedIdx;
+      while (i < end) {
+        final char c = s.charAt(i);
         if (c == '%') {
           /*
            * We hit a '%', and in order to preserve unsafe characters, we need to process all the
-           * consecutive % patterns and turn those into one single byte array.
+           * consecutive % patterns and decode them together.
            */
-          if (chars.remaining() < 2) {
+          if (end - i < 3) {
             // Underflow. Error if strict.
             if (strict) {
               throw new IllegalArgumentException(
                   "Invalid URL encoding: Incomplete trailing escape (%) pattern");
             }
-            resultBuf.put('%');
-            continue mainCharsLoop;
+            resultBuf.append('%');
+            i++;
+            continue;
           }
-          // Rewind to put the '%' back
-          chars.position(chars.position() - 1);
-          // Clear the buffer
-          decBuf.clear();
-          // Flag for whether we hit an invalid digit. Only applicable for lenient mode.
-          boolean hasInvalidDigit = false;
-          escapePatternLoop: do {
-            if (chars.get() != '%') {
-              // The % pattern ended. Rewind one char and bail out.
-              chars.position(chars.position() - 1);
-              break escapePatternLoop;
-            }
-            final char uc = chars.get();
-            final char lc = chars.get();
-            final int u = Character.digit(uc, 16);
-            final int l = Character.digit(lc, 16);
-            if (u != -1 && l != -1) {
-              // Both digits are valid
-              decBuf.put((byte) ((u << 4) + l));
-            } else if (strict) {
-              // We have an invalid digit and we are in strict mode
-              throw new IllegalArgumentException("Invalid URL encoding: "
-                  + "Illegal hex characters in escape (%) pattern: %" + uc + lc);
-            } else {
+          final int runEnd = scanEscapeRun(s, i, end);
+          if (runEnd > i) {
+            final int resultLen = resultBuf.length();
+            if (!utf8 || !decodeUtf8Run(s, i, runEnd, resultBuf)) {
               /*
-               * The pattern has an invalid digit, so we need to signal to output the '%' and
-               * rewind, since the 2 characters can potentially start a new encoding pattern.
+               * Either this is not UTF-8, or the run is not well-formed UTF-8. Let the
+               * CharsetDecoder deal with it, which takes care of the replacement of malformed
+               * input.
                */
-              hasInvalidDigit = true;
-              chars.position(chars.position() - 2);
-              break escapePatternLoop;
+              resultBuf.setLength(resultLen);
+              if (charsetRunDecoder == null) {
+                charsetRunDecoder = new CharsetRunDecoder(charset, (end - i) / 3);
+                if (batchBufs != null) {
+                  batchBufs.charsetRunDecoder = charsetRunDecoder;
+                }
+              }
+              charsetRunDecoder.decode(s, i, runEnd, resultBuf);
             }
-          } while (chars.remaining() >= 3);
-          // The byte array has been built. Now decode it and output it.
-          decBuf.flip();
-          if (decBuf.hasRemaining()) {
-            resultBuf.put(charset.decode(decBuf));
           }
-          if (hasInvalidDigit) {
+          i = runEnd;
+          if (i < end - 2 && s.charAt(i) == '%') {
             /*
-             * If we hit an invalid digit, we need to output the leading '%' and leave the digits
-             * alone
+             * The run ended on a % pattern with an invalid digit, which is only possible in lenient
+             * mode. Output the leading '%' and leave the digits alone, since they can potentially
+             * start a new encoding pattern.
              */
-            resultBuf.put('%');
+            resultBuf.append('%');
+            i++;
           }
         } else if (plusToSpace && c == '+') {
-          resultBuf.put(' ');
+          resultBuf.append(' ');
+          i++;
         } else {
-          resultBuf.put(c);
+          // Skip over the run of chars that do not need decoding and copy it in bulk
+          final int runEnd;
+          if (str == null) {
+            runEnd = indexOfFirstEncoded(s, i + 1, end);
+          } else {
+            if (nextPercentIdx <= i) {
+              nextPercentIdx = indexOfOrEnd(str, '%', i + 1);
+            }
+            if (plusToSpace && nextPlusIdx <= i) {
+              nextPlusIdx = indexOfOrEnd(str, '+', i + 1);
+            }
+            runEnd = plusToSpace ? Math.min(nextPercentIdx, nextPlusIdx) : nextPercentIdx;
+          }
+          resultBuf.append(s, i, runEnd);
+          i = runEnd;
         }
       }
-      resultBuf.flip();
+      if (interner != null) {
+        return interner.intern(resultBuf, 0, resultBuf.length());
+      }
       return resultBuf.toString();
     }
 
+    /**
+     * URL decode all the inputs in order with one set of reusable buffers.
+     *
+     * @return an unmodifiable {@link List} of the decoded Strings
+     * @throws IllegalArgumentException if any of the inputs contains invalid URL encodings in
+     *         strict mode
+     * @see #decode(CharSequence)
+     */
+    public List<String> decodeAll(@Nonnull List<? extends CharSequence> inputs) {
+      return Collections.unmodifiableList(Arrays.asList(
+          transformAll(inputs, BatchBuffers::new, this::decode, null)));
+    }
+
+    /**
+     * URL decode all the inputs, splitting them into chunks that are picked up by workers running
+     * on the given {@link Executor}, e.g. {@link ForkJoinPool#commonPool()}. Each worker reuses one
+     * set of buffers, and small batches are decoded in the calling thread. This method blocks until
+     * all the inputs have been decoded.
+     *
+     * @return an unmodifiable {@link List} of the decoded Strings in the order of the inputs
+     * @throws IllegalArgumentException if any of the inputs contains invalid URL encodings in
+     *         strict mode
+     * @see #decodeAll(List)
+     */
+    public List<String> decodeAll(@Nonnull List<? extends CharSequence> inputs,
+        @Nonnull Executor executor) {
+      Objects.requireNonNull(executor);
+      return Collections.unmodifiableList(Arrays.asList(
+          transformAll(inputs, BatchBuffers::new, this::decode, executor)));
+    }
+
+    /**
+     * @return a new array of the decoded Strings
+     * @see #decodeAll(List)
+     */
+    public String[] decodeAll(@Nonnull CharSequence[] inputs) {
+      return transformAll(Arrays.asList(inputs), BatchBuffers::new, this::decode, null);
+    }
+
+    /**
+     * @return a new array of the decoded Strings
+     * @see #decodeAll(List, Executor)
+     */
+    public String[] decodeAll(@Nonnull CharSequence[] inputs, @Nonnull Executor executor) {
+      Objects.requireNonNull(executor);
+      return transformAll(Arrays.asList(inputs), BatchBuffers::new, this::decode, executor);
+    }
+
+    private String decode(@Nonnull CharSequence s, @Nonnull BatchBuffers batchBufs) {
+      return decode(s, 0, s.length(), batchBufs, null);
+    }
+
+    /**
+     * URL decode bytes, e.g. the raw bytes of a form body, into the bytes they represent. The
+     * {@link Charset} of this {@link Decoder} is not used, since the result is not turned into
+     * chars.
+     *
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if the input contains invalid URL encodings in strict mode
+     */
+    public byte[] decodeBytes(@Nonnull byte[] bytes) {
+      final ByteBuffer resultBuf = decodeBytes(ByteBuffer.wrap(bytes));
+      return Arrays.copyOf(resultBuf.array(), resultBuf.limit());
+    }
+
+    /**
+     * URL decode the remaining bytes of the given {@link ByteBuffer}, whose position will be
+     * advanced to its limit.
+     *
+     * @return a new {@link ByteBuffer} containing the decoded bytes
+     * @see #decodeBytes(byte[])
+     */
+    public ByteBuffer decodeBytes(@Nonnull ByteBuffer bytes) {
+      // The decoded result is never longer than the input
+      final ByteBuffer resultBuf = ByteBuffer.allocate(bytes.remaining());
+      final ByteDecoder byteDecoder = new ByteDecoder();
+      byteDecoder.decode(bytes, resultBuf);
+      byteDecoder.finish(resultBuf);
+      resultBuf.flip();
+      return resultBuf;
+    }
+
+    /**
+     * URL decode all the bytes from the given {@link ReadableByteChannel} into the given
+     * {@link WritableByteChannel} in fixed-size chunks, so the memory usage is bounded regardless of
+     * the size of the input. % patterns split across chunks are handled. Neither channel is closed.
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if the input contains invalid URL encodings in strict mode
+     * @see #decodeBytes(byte[])
+     */
+    public long decodeBytes(@Nonnull ReadableByteChannel in, @Nonnull WritableByteChannel out)
+        throws IOException {
+      Objects.requireNonNull(in);
+      Objects.requireNonNull(out);
+      final ByteBuffer inBuf = ByteBuffer.allocate(BYTE_CHUNK_SIZE);
+      // A chunk can at most output 2 more bytes pending from the previous chunk
+      final ByteBuffer outBuf = ByteBuffer.allocate(BYTE_CHUNK_SIZE + 2);
+      final ByteDecoder byteDecoder = new ByteDecoder();
+      long written = 0;
+      while (in.read(inBuf) >= 0) {
+        inBuf.flip();
+        byteDecoder.decode(inBuf, outBuf);
+        inBuf.clear();
+        written += writeFully(outBuf, out);
+      }
+      byteDecoder.finish(outBuf);
+      written += writeFully(outBuf, out);
+      return written;
+    }
+
+    /**
+     * @see #decodeBytes(ReadableByteChannel, WritableByteChannel)
+     */
+    public long decodeBytes(@Nonnull InputStream in, @Nonnull WritableByteChannel out)
+        throws IOException {
+      return decodeBytes(Channels.newChannel(in), out);
+    }
+
+    /**
+     * Stateful byte decoder, where a % pattern can be split across multiple calls to
+     * {@link #decode(ByteBuffer, ByteBuffer)}. The output is never longer than the input, with the
+     * exception that up to 2 bytes pending from a previous call can be output.
+     */
+    private final class ByteDecoder {
+
+      // Not in a % pattern
+      private static final int STATE_NONE = 0;
+      // Got the '%'
+      private static final int STATE_PERCENT = 1;
+      // Got the '%' and the first hex digit
+      private static final int STATE_FIRST_DIGIT = 2;
+
+      private int state = STATE_NONE;
+      private int firstDigit;
+
+      void decode(@Nonnull ByteBuffer in, @Nonnull ByteBuffer out) {
+        while (in.hasRemaining()) {
+          if (state == STATE_NONE) {
+            /*
+             * Copy the run of bytes that do not need decoding in bulk. There are no pending bytes
+             * in STATE_NONE, so out has at least as much room as in.
+             */
+            final int runEnd = indexOfFirstEncoded(in);
+            if (runEnd > in.position()) {
+              final int limit = in.limit();
+              in.limit(runEnd);
+              out.put(in);
+              in.limit(limit);
+              if (runEnd == limit) {
+                return;
+              }
+            }
+          }
+          decodeByte(in.get() & 0xFF, out);
+        }
+      }
+
+      /**
+       * @return the absolute index of the first byte from the position of the buffer that needs to
+       *         be decoded, or the limit of the buffer if nothing needs to be decoded. 8 bytes are
+       *         checked at a time.
+       */
+      private int indexOfFirstEncoded(@Nonnull ByteBuffer in) {
+        final int limit = in.limit();
+        int i = in.position();
+        for (; i <= limit - Long.BYTES; i += Long.BYTES) {
+          final long word = in.getLong(i);
+          if (containsByte(word, PERCENT_WORD)
+              || (plusToSpace && containsByte(word, PLUS_WORD))) {
+            break;
+          }
+        }
+        // Find the exact byte within the word, or check the trailing bytes
+        for (; i < limit; i++) {
+          final byte b = in.get(i);
+          if (b == '%' || (plusToSpace && b == '+')) {
+            return i;
+          }
+        }
+        return limit;
+      }
+
+      void finish(@Nonnull ByteBuffer out) {
+        if (state == STATE_NONE) {
+          return;
+        }
+        // Underflow. Error if strict.
+        if (strict) {
+          throw new IllegalArgumentException(
+              "Invalid URL encoding: Incomplete trailing escape (%) pattern");
+        }
+        out.put((byte) '%');
+        if (state == STATE_FIRST_DIGIT) {
+          out.put((byte) firstDigit);
+        }
+        state = STATE_NONE;
+      }
+
+      private void decodeByte(int b, @Nonnull ByteBuffer out) {
+        switch (state) {
+          case STATE_PERCENT:
+            if (asciiHexValue(b) != -1) {
+              firstDigit = b;
+              state = STATE_FIRST_DIGIT;
+              return;
+            }
+            invalidDigit("%" + (char) b);
+            // Output the '%' and reprocess the byte, since it can start a new % pattern
+            state = STATE_NONE;
+            out.put((byte) '%');
+            decodeByte(b, out);
+            return;
+          case STATE_FIRST_DIGIT:
+            state = STATE_NONE;
+            if (asciiHexValue(b) != -1) {
+              out.put((byte) ((asciiHexValue(firstDigit) << 4) | asciiHexValue(b)));
+              return;
+            }
+            invalidDigit("%" + (char) firstDigit + (char) b);
+            out.put((byte) '%');
+            out.put((byte) firstDigit);
+            decodeByte(b, out);
+            return;
+          default:
+            if (b == '%') {
+              state = STATE_PERCENT;
+            } else if (plusToSpace && b == '+') {
+              out.put((byte) ' ');
+            } else {
+              out.put((byte) b);
+            }
+        }
+      }
+
+      private void invalidDigit(@Nonnull String pattern) {
+        if (strict) {
+          throw new IllegalArgumentException("Invalid URL encoding: "
+              + "Illegal hex characters in escape (%) pattern: " + pattern);
+        }
+      }
+
+    }
+
+    /**
+     * Same as {@link #indexOfFirstEncoded(CharSequence, int, int)} with the range going to the end
+     * of the String, but uses {@link String#indexOf(int, int)}, which is an intrinsic that checks
+     * multiple chars at a time on newer JVMs. Since it may scan the entire String for '+', it
+     * should only be used once per decode call.
+     */
+    private int indexOfFirstEncoded(@Nonnull String s, int start) {
+      final int percentIdx = s.indexOf('%', start);
+      final int limit = percentIdx < 0 ? s.length() : percentIdx;
+      if (!plusToSpace) {
+        return limit;
+      }
+      final int plusIdx = s.indexOf('+', start);
+      return plusIdx < 0 || plusIdx > limit ? limit : plusIdx;
+    }
+
+    private static int indexOfOrEnd(@Nonnull String s, char c, int start) {
+      final int idx = s.indexOf(c, start);
+      return idx < 0 ? s.length() : idx;
+    }
+
+    /**
+     * Scan the consecutive % patterns starting at the given index, which is expected to be a '%'
+     * followed by at least 2 chars before the given end.
+     *
+     * @return the end index (exclusive) of the run of valid % patterns
+     * @throws IllegalArgumentException if we hit an invalid digit in strict mode
+     */
+    private int scanEscapeRun(@Nonnull CharSequence s, int start, int end) {
+      int i = start;
+      do {
+        final char uc = s.charAt(i + 1);
+        final char lc = s.charAt(i + 2);
+        if (hexValue(uc) == -1 || hexValue(lc) == -1) {
+          if (strict) {
+            // We have an invalid digit and we are in strict mode
+            throw new IllegalArgumentException("Invalid URL encoding: "
+                + "Illegal hex characters in escape (%) pattern: %" + uc + lc);
+          }
+          break;
+        }
+        i += 3;
+      } while (i < end - 2 && s.charAt(i) == '%');
+      return i;
+    }
+
+    /**
+     * Decode a run of valid % patterns as UTF-8 straight into the result without going through a
+     * CharsetDecoder.
+     *
+     * @return true if the run was well-formed UTF-8 and has been decoded, or false if the run is
+     *         malformed, in which case the partially decoded chars should be discarded.
+     */
+    private static boolean decodeUtf8Run(@Nonnull CharSequence s, int start, int end,
+        @Nonnull StringBuilder resultBuf) {
+      // The number of continuation bytes we still need for the current code point
+      int need = 0;
+      int codePoint = 0;
+      // The minimum code point for the current sequence length, used to reject overlong forms
+      int minCodePoint = 0;
+      for (int i = start; i < end; i += 3) {
+        final int b = escapedByte(s, i);
+        if (need == 0) {
+          if (b < 0x80) {
+            resultBuf.append((char) b);
+          } else if (b >= 0xC2 && b <= 0xDF) {
+            need = 1;
+            codePoint = b & 0x1F;
+            minCodePoint = 0x80;
+          } else if (b >= 0xE0 && b <= 0xEF) {
+            need = 2;
+            codePoint = b & 0x0F;
+            minCodePoint = 0x800;
+          } else if (b >= 0xF0 && b <= 0xF4) {
+            need = 3;
+            codePoint = b & 0x07;
+            minCodePoint = 0x10000;
+          } else {
+            return false;
+          }
+        } else if ((b & 0xC0) != 0x80) {
+          return false;
+        } else {
+          codePoint = (codePoint << 6) | (b & 0x3F);
+          if (--need == 0) {
+            if (codePoint < minCodePoint || codePoint > Character.MAX_CODE_POINT
+                || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)) {
+              return false;
+            }
+            resultBuf.appendCodePoint(codePoint);
+          }
+        }
+      }
+      // A truncated sequence at the end of the run is malformed
+      return need == 0;
+    }
+
+    /**
+     * @return the index of the first char within the range that needs to be decoded, or the end of
+     *         the range if nothing needs to be decoded
+     */
+    int indexOfFirstEncoded(@Nonnull CharSequence s, int start, int end) {
+      for (int i = start; i < end; i++) {
+        final char c = s.charAt(i);
+        if (c == '%' || (plusToSpace && c == '+')) {
+          return i;
+        }
+      }
+      return end;
+    }
+
+    /**
+     * Two {@link Decoder}s are equal if they have the same config.
+     */
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Decoder)) {
+        return false;
+      }
+      final Decoder other = (Decoder) obj;
+      return this.charset.equals(other.charset) && this.plusToSpace == other.plusToSpace
+          && this.strict == other.strict;
+    }
+
+    @Override
+    public int hashCode() {
+      int h = charset.hashCode();
+      h = h * 31 + Boolean.hashCode(plusToSpace);
+      return h * 31 + Boolean.hashCode(strict);
+    }
+
   }
 
-  private static char hexDigit(int b, boolean upperCase) {
+  /**
+   * Buffers reused by all the decode calls of one worker of a batch
+   */
+  private static final class BatchBuffers {
+
+    final StringBuilder resultBuf = new StringBuilder();
+    // Only initialized if we need to go through the CharsetDecoder
+    CharsetRunDecoder charsetRunDecoder;
+
+  }
+
+  /**
+   * Decodes runs of % patterns with the pooled {@link CharsetDecoder} of the current thread. The
+   * buffers are reused for all the runs within one decode call. The decoder is fetched for every
+   * run, so it is never held across calls.
+   */
+  private static final class CharsetRunDecoder {
+
+    private final Charset charset;
+    private final float maxCharsPerByte;
+    private ByteBuffer byteBuf;
+    private CharBuffer charBuf;
+
+    CharsetRunDecoder(@Nonnull Charset charset, int initialByteCapacity) {
+      this.charset = charset;
+      this.maxCharsPerByte = pooledCharsetDecoder().maxCharsPerByte();
+      this.byteBuf = ByteBuffer.allocate(initialByteCapacity);
+      this.charBuf = CharBuffer.allocate(maxChars(initialByteCapacity));
+    }
+
+    /**
+     * Decode a run of valid % patterns and append the result
+     */
+    void decode(@Nonnull CharSequence s, int start, int end, @Nonnull StringBuilder resultBuf) {
+      final int byteCount = (end - start) / 3;
+      if (byteBuf.capacity() < byteCount) {
+        byteBuf = ByteBuffer.allocate(byteCount);
+        charBuf = CharBuffer.allocate(maxChars(byteCount));
+      }
+      byteBuf.clear();
+      for (int i = start; i < end; i += 3) {
+        byteBuf.put((byte) escapedByte(s, i));
+      }
+      byteBuf.flip();
+      charBuf.clear();
+      final CharsetDecoder charsetDecoder = pooledCharsetDecoder();
+      charsetDecoder.decode(byteBuf, charBuf, true);
+      charsetDecoder.flush(charBuf);
+      resultBuf.append(charBuf.array(), 0, charBuf.position());
+    }
+
+    private CharsetDecoder pooledCharsetDecoder() {
+      // Same behavior as Charset#decode
+      return RSCharsetCoders.decoder(charset, CodingErrorAction.REPLACE);
+    }
+
+    private int maxChars(int byteCount) {
+      return (int) Math.ceil(byteCount * (double) maxCharsPerByte);
+    }
+
+  }
+
+  /**
+   * Apply the given function to all the inputs. If an {@link Executor} is given and there is more
+   * than one chunk of inputs, up to one worker per thread of the {@link Executor} is started, each
+   * with one set of buffers, and the workers pick up the chunks until none are left. This method
+   * blocks until all of them are done.
+   *
+   * @return a new array of the results in the order of the inputs
+   */
+  private static <B> String[] transformAll(@Nonnull List<? extends CharSequence> inputs,
+      @Nonnull Supplier<B> bufsFactory, @Nonnull BiFunction<CharSequence, B, String> fn,
+      @Nullable Executor executor) {
+    // Chunks index into the List, so make sure that is cheap
+    final List<? extends CharSequence> list =
+        inputs instanceof RandomAccess ? inputs : new ArrayList<>(inputs);
+    final int size = list.size();
+    final String[] results = new String[size];
+    if (executor == null || size <= BATCH_CHUNK_SIZE) {
+      transformRange(list, 0, size, bufsFactory.get(), fn, results);
+      return results;
+    }
+    final int chunkCount = (size + BATCH_CHUNK_SIZE - 1) / BATCH_CHUNK_SIZE;
+    final AtomicInteger nextChunk = new AtomicInteger();
+    final CompletableFuture<?>[] workers =
+        new CompletableFuture<?>[Math.min(chunkCount, parallelism(executor))];
+    for (int i = 0; i < workers.length; i++) {
+      workers[i] = CompletableFuture.runAsync(() -> {
+        final B bufs = bufsFactory.get();
+        try {
+          for (int chunk; (chunk = nextChunk.getAndIncrement()) < chunkCount;) {
+            final int start = chunk * BATCH_CHUNK_SIZE;
+            transformRange(list, start, Math.min(start + BATCH_CHUNK_SIZE, size), bufs, fn,
+                results);
+          }
+        } catch (RuntimeException | Error e) {
+          // The batch fails anyway, so stop the other workers from picking up more chunks
+          nextChunk.set(chunkCount);
+          throw e;
+        }
+      }, executor);
+    }
+    try {
+      CompletableFuture.allOf(workers).join();
+    } catch (CompletionException e) {
+      // Rethrow what the function threw, e.g. an IllegalArgumentException from a strict Decoder
+      RSThrowables.wrapAndThrow(e.getCause() == null ? e : e.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * @return the number of threads the given {@link Executor} is expected to run tasks on
+   */
+  private static int parallelism(@Nonnull Executor executor) {
+    return executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism()
+        : Runtime.getRuntime().availableProcessors();
+  }
+
+  private static <B> void transformRange(@Nonnull List<? extends CharSequence> inputs, int start,
+      int end, @Nonnull B bufs, @Nonnull BiFunction<CharSequence, B, String> fn,
+      @Nonnull String[] results) {
+    for (int i = start; i < end; i++) {
+      results[i] = fn.apply(inputs.get(i), bufs);
+    }
+  }
+
+  /**
+   * Write everything in the given buffer, which is flipped before and cleared after.
+   *
+   * @return the number of bytes written
+   */
+  private static int writeFully(@Nonnull ByteBuffer buf, @Nonnull WritableByteChannel out)
+      throws IOException {
+    buf.flip();
+    final int written = buf.remaining();
+    while (buf.hasRemaining()) {
+      out.write(buf);
+    }
+    buf.clear();
+    return written;
+  }
+
+  /**
+   * SWAR check for whether any of the 8 bytes of the word equals the byte repeated in the pattern.
+   * XOR turns the matching bytes into zeros, and the classic zero byte check never gives a false
+   * result for the whole word.
+   */
+  private static boolean containsByte(long word, long pattern) {
+    final long v = word ^ pattern;
+    return ((v - 0x0101010101010101L) & ~v & 0x8080808080808080L) != 0;
+  }
+
+  /**
+   * @return the value of the ASCII hex digit, or -1 if the byte is not an ASCII hex digit
+   */
+  static int asciiHexValue(int b) {
+    return b < HEX_VALUES.length ? HEX_VALUES[b] : -1;
+  }
+
+  /**
+   * @return the byte represented by the valid % pattern at the given index
+   */
+  private static int escapedByte(@Nonnull CharSequence s, int i) {
+    return (hexValue(s.charAt(i + 1)) << 4) | hexValue(s.charAt(i + 2));
+  }
+
+  /**
+   * @return the value of the hex digit, or -1 if the char is not a hex digit. Note that non-ASCII
+   *         digits are accepted as well, which is consistent with {@link Character#digit(char, int)}.
+   */
+  private static int hexValue(char c) {
+    if (c < HEX_VALUES.length) {
+      return HEX_VALUES[c];
+    }
+    return Character.digit(c, 16);
+  }
+
+  static char hexDigit(int b, boolean upperCase) {
     final int digit = b & 0xF;
     if (digit < 10) {
       return (char) ('0' + digit);
@@ -436,25 +1491,130 @@ public final class RSUrlCodec {
     return (char) ((upperCase ? 'A' : 'a') - 10 + digit);
   }
 
-  private static boolean isAsciiAlphaNum(int c) {
-    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+  /**
+   * @return whether the char is an RFC 3986 unreserved char
+   */
+  static boolean isUnreserved(int c) {
+    return AsciiCharSet.RFC3986_UNRESERVED.test(c);
   }
 
-  private static enum InternalSafeCharPredicate implements IntPredicate {
+  /**
+   * An immutable set of ASCII chars compiled into a 128-bit bitmap
+   */
+  @Immutable
+  static final class AsciiCharSet implements IntPredicate {
+
+    private static final String ASCII_ALPHA_NUM =
+        "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    static final AsciiCharSet RFC3986_UNRESERVED = of(ASCII_ALPHA_NUM + "-_.~");
+    static final AsciiCharSet WWW_FORM_URLENCODED = of(ASCII_ALPHA_NUM + "-_.*");
+
+    // Bits for chars 0-63
+    private final long lo;
+    // Bits for chars 64-127
+    private final long hi;
+
+    private AsciiCharSet(long lo, long hi) {
+      this.lo = lo;
+      this.hi = hi;
+    }
+
+    static AsciiCharSet of(@Nonnull CharSequence chars) {
+      long lo = 0;
+      long hi = 0;
+      for (int i = 0; i < chars.length(); i++) {
+        final char c = chars.charAt(i);
+        if (c < 64) {
+          lo |= 1L << c;
+        } else if (c < 128) {
+          hi |= 1L << c;
+        } else {
+          throw new IllegalArgumentException("Non-ASCII char: " + c);
+        }
+      }
+      return new AsciiCharSet(lo, hi);
+    }
+
+    /**
+     * @return the index of the first char within the range that is not in this set, or the end of
+     *         the range if all the chars are in this set
+     */
+    int indexOfFirstNonMember(@Nonnull CharSequence s, int start, int end) {
+      final long lo = this.lo;
+      final long hi = this.hi;
+      int i = start;
+      // Check 4 chars at a time with a single branch
+      for (; i <= end - 4; i += 4) {
+        final char c0 = s.charAt(i);
+        final char c1 = s.charAt(i + 1);
+        final char c2 = s.charAt(i + 2);
+        final char c3 = s.charAt(i + 3);
+        /*
+         * Non-ASCII chars are never members. For ASCII chars, pick the bitmap with bit 6 of the
+         * char, and shift the bit of the char into the lowest bit, since shifting a long only uses
+         * the lowest 6 bits of the shift distance.
+         */
+        final long bits = ((c0 & 64) == 0 ? lo : hi) >>> c0 & ((c1 & 64) == 0 ? lo : hi) >>> c1
+            & ((c2 & 64) == 0 ? lo : hi) >>> c2 & ((c3 & 64) == 0 ? lo : hi) >>> c3;
+        if (((c0 | c1 | c2 | c3) & 0xFF80) != 0 || (bits & 1) == 0) {
+          break;
+        }
+      }
+      // Find the exact index within the last block
+      return indexOfFirstNonMemberPerChar(s, i, end);
+    }
+
+    /**
+     * Same as {@link #indexOfFirstNonMember(CharSequence, int, int)}, but checks one char at a
+     * time. Visible for benchmarking.
+     */
+    int indexOfFirstNonMemberPerChar(@Nonnull CharSequence s, int start, int end) {
+      final long lo = this.lo;
+      final long hi = this.hi;
+      int i = start;
+      for (; i < end; i++) {
+        final char c = s.charAt(i);
+        if (c < 64) {
+          if ((lo & (1L << c)) == 0) {
+            break;
+          }
+        } else if (c >= 128 || (hi & (1L << c)) == 0) {
+          break;
+        }
+      }
+      return i;
+    }
+
+    AsciiCharSet union(@Nonnull AsciiCharSet other) {
+      return new AsciiCharSet(this.lo | other.lo, this.hi | other.hi);
+    }
 
-    RFC3986_UNRESERVED {
-      @Override
-      public boolean test(int c) {
-        return isAsciiAlphaNum(c) || c == '-' || c == '_' || c == '.' || c == '~';
+    @Override
+    public boolean test(int c) {
+      // Note that shifting a long only uses the lowest 6 bits of the shift distance
+      if (c < 64) {
+        return c >= 0 && (lo & (1L << c)) != 0;
       }
-    },
+      return c < 128 && (hi & (1L << c)) != 0;
+    }
+
+    @Override
+    public int hashCode() {
+      return Long.hashCode(lo) * 31 + Long.hashCode(hi);
+    }
 
-    WWW_FORM_URLENCODED {
-      @Override
-      public boolean test(int c) {
-        return isAsciiAlphaNum(c) || c == '-' || c == '_' || c == '.' || c == '*';
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof AsciiCharSet)) {
+        return false;
       }
-    },;
+      final AsciiCharSet other = (AsciiCharSet) obj;
+      return this.lo == other.lo && this.hi == other.hi;
+    }
 
   }
 
@@ -0,0 +1,245 @@
+package com.saasquatch.common.base;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A bounded cache of encoded and decoded Strings for a small set of hot inputs that get encoded or
+ * decoded over and over again, e.g. parameter names and IDs. Entries are keyed by the input and the
+ * config of the {@link RSUrlCodec.Encoder} or {@link RSUrlCodec.Decoder}, so one cache can be
+ * shared by multiple codecs.<br>
+ * Each codec config has its own concurrent map keyed by the input, so a hit is a lock-free lookup
+ * that does not allocate anything for String inputs. Other {@link CharSequence}s are copied into a
+ * String first. Once the cache is full, misses evict entries with the clock algorithm, where
+ * entries that have been hit since the clock hand last passed them get a second chance, so the max
+ * size is only exceeded briefly while other threads are evicting. Inputs longer than the max input
+ * length are never cached, and neither are inputs that fail to decode.<br>
+ * This class is thread-safe. Use {@link #hitCount()} and {@link #missCount()} to check whether the
+ * cache pays for itself.
+ *
+ * <pre>
+ * RSUrlCodecCache cache = RSUrlCodecCache.create(1000);
+ * cache.encode(RSUrlCodec.getEncoder(), "program id"); // program%20id
+ * </pre>
+ *
+ * @author sli
+ */
+@ThreadSafe
+public final class RSUrlCodecCache {
+
+  // Cached inputs are supposed to be short tokens
+  private static final int DEFAULT_MAX_INPUT_LENGTH = 256;
+
+  // The entries of each Encoder or Decoder config keyed by the input
+  private final ConcurrentMap<Object, ConcurrentMap<String, Entry>> entriesByCodec =
+      new ConcurrentHashMap<>();
+  private final int maxSize;
+  private final int maxInputLength;
+  private final AtomicInteger size = new AtomicInteger();
+  private final Clock clock = new Clock();
+  private final LongAdder hitCount = new LongAdder();
+  private final LongAdder missCount = new LongAdder();
+
+  private RSUrlCodecCache(int maxSize, int maxInputLength) {
+    this.maxSize = maxSize;
+    this.maxInputLength = maxInputLength;
+  }
+
+  /**
+   * @param maxSize the max number of entries in the cache
+   * @return a new {@link RSUrlCodecCache} that caches inputs of up to 256 chars
+   */
+  public static RSUrlCodecCache create(int maxSize) {
+    return create(maxSize, DEFAULT_MAX_INPUT_LENGTH);
+  }
+
+  /**
+   * @param maxSize the max number of entries in the cache
+   * @param maxInputLength the max length of the inputs to cache
+   * @return a new {@link RSUrlCodecCache}
+   */
+  public static RSUrlCodecCache create(int maxSize, int maxInputLength) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("Non-positive maxSize");
+    }
+    if (maxInputLength < 0) {
+      throw new IllegalArgumentException("Negative maxInputLength");
+    }
+    return new RSUrlCodecCache(maxSize, maxInputLength);
+  }
+
+  /**
+   * URL encode with the given {@link RSUrlCodec.Encoder}, or get the previously encoded result
+   *
+   * @see RSUrlCodec.Encoder#encode(CharSequence)
+   */
+  public String encode(@Nonnull RSUrlCodec.Encoder encoder, @Nonnull CharSequence s) {
+    Objects.requireNonNull(encoder);
+    if (s.length() > maxInputLength) {
+      return encoder.encode(s);
+    }
+    final String input = s.toString();
+    final ConcurrentMap<String, Entry> entries = entriesFor(encoder);
+    final String cached = get(entries, input);
+    if (cached != null) {
+      return cached;
+    }
+    final String result = encoder.encode(input);
+    put(entries, input, result);
+    return result;
+  }
+
+  /**
+   * URL decode with the given {@link RSUrlCodec.Decoder}, or get the previously decoded result
+   *
+   * @throws IllegalArgumentException if the input contains invalid URL encodings in strict mode
+   * @see RSUrlCodec.Decoder#decode(CharSequence)
+   */
+  public String decode(@Nonnull RSUrlCodec.Decoder decoder, @Nonnull CharSequence s) {
+    Objects.requireNonNull(decoder);
+    if (s.length() > maxInputLength) {
+      return decoder.decode(s);
+    }
+    final String input = s.toString();
+    final ConcurrentMap<String, Entry> entries = entriesFor(decoder);
+    final String cached = get(entries, input);
+    if (cached != null) {
+      return cached;
+    }
+    final String result = decoder.decode(input);
+    put(entries, input, result);
+    return result;
+  }
+
+  /**
+   * @return the number of calls that were served from the cache
+   */
+  public long hitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * @return the number of calls with cacheable inputs that were not in the cache. Inputs that are
+   *         too long to be cached are not counted.
+   */
+  public long missCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * @return the current number of entries in the cache, which is approximate while other threads
+   *         are updating the cache
+   */
+  public int size() {
+    return size.get();
+  }
+
+  /**
+   * Remove all the entries. The counters are not reset.
+   */
+  public void clear() {
+    for (ConcurrentMap<String, Entry> entries : entriesByCodec.values()) {
+      for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+        if (entries.remove(entry.getKey(), entry.getValue())) {
+          size.decrementAndGet();
+        }
+      }
+    }
+  }
+
+  private ConcurrentMap<String, Entry> entriesFor(@Nonnull Object codec) {
+    final ConcurrentMap<String, Entry> entries = entriesByCodec.get(codec);
+    if (entries != null) {
+      return entries;
+    }
+    return entriesByCodec.computeIfAbsent(codec, k -> new ConcurrentHashMap<>());
+  }
+
+  @Nullable
+  private String get(@Nonnull ConcurrentMap<String, Entry> entries, @Nonnull String input) {
+    final Entry entry = entries.get(input);
+    if (entry == null) {
+      missCount.increment();
+      return null;
+    }
+    // Only write if needed, so hot entries are not written to by every hit
+    if (!entry.referenced) {
+      entry.referenced = true;
+    }
+    hitCount.increment();
+    return entry.value;
+  }
+
+  private void put(@Nonnull ConcurrentMap<String, Entry> entries, @Nonnull String input,
+      @Nonnull String value) {
+    if (entries.putIfAbsent(input, new Entry(value)) == null
+        && size.incrementAndGet() > maxSize) {
+      clock.evict();
+    }
+  }
+
+  /**
+   * The clock hand that goes around the entries of all the codecs for eviction
+   */
+  private final class Clock {
+
+    @Nullable
+    private Iterator<ConcurrentMap<String, Entry>> codecHand;
+    @Nullable
+    private ConcurrentMap<String, Entry> entries;
+    @Nullable
+    private Iterator<Map.Entry<String, Entry>> entryHand;
+
+    /**
+     * Evict entries until the cache is back within its max size. This also stops after 2 rounds
+     * in a row that pass no entries at all, which only happens if other threads have removed the
+     * entries in the meantime.
+     */
+    synchronized void evict() {
+      int emptyRounds = 0;
+      while (size.get() > maxSize && emptyRounds < 2) {
+        if (entryHand == null || !entryHand.hasNext()) {
+          if (codecHand == null || !codecHand.hasNext()) {
+            codecHand = entriesByCodec.values().iterator();
+            emptyRounds++;
+          }
+          if (!codecHand.hasNext()) {
+            return;
+          }
+          entries = codecHand.next();
+          entryHand = entries.entrySet().iterator();
+          continue;
+        }
+        final Map.Entry<String, Entry> entry = entryHand.next();
+        emptyRounds = 0;
+        if (entry.getValue().referenced) {
+          entry.getValue().referenced = false;
+        } else if (entries.remove(entry.getKey(), entry.getValue())) {
+          size.decrementAndGet();
+        }
+      }
+    }
+
+  }
+
+  private static final class Entry {
+
+    final String value;
+    // Whether the entry has been hit since the clock hand last passed it
+    volatile boolean referenced;
+
+    Entry(@Nonnull String value) {
+      this.value = value;
+    }
+
+  }
+
+}
@@ -1,10 +1,12 @@
 package com.saasquatch.common.collect;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
@@ -18,6 +20,7 @@ import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Better {@link Collector}s than the ones in {@link Collectors}. If you have the option of using
@@ -31,25 +34,14 @@ public final class RSCollectors {
   private RSCollectors() {}
 
   /**
-   * {@link Collector} that collects elements into an unmodifiable {@link List}.
+   * {@link Collector} that collects elements into an unmodifiable {@link List}. The elements are
+   * collected directly into an array, which is only copied in the end if it is not exactly sized.
    *
    * @see Collectors#toList()
    */
   public static <T> Collector<T, ?, List<T>> toUnmodifiableList() {
-    return Collectors.collectingAndThen(Collectors.toList(),
-        l -> {
-          switch (l.size()) {
-            case 0:
-              return Collections.emptyList();
-            case 1:
-              return Collections.singletonList(l.get(0));
-            default: {
-              @SuppressWarnings("unchecked")
-              final List<T> trimmedCopy = (List<T>) Arrays.asList(l.toArray());
-              return Collections.unmodifiableList(trimmedCopy);
-            }
-          }
-        });
+    return Collector.<T, ListBuffer<T>, List<T>>of(ListBuffer::new, ListBuffer::add,
+        ListBuffer::combine, ListBuffer::toUnmodifiableList);
   }
 
   /**
@@ -230,8 +222,15 @@ public final class RSCollectors {
         return Collections.emptySet();
       case 1:
         return Collections.singleton(s.iterator().next());
-      default:
+      default: {
+        // Only plain HashSets are made compact, since other Sets may have their own iteration
+        // order or notion of equality, or may already be compact like EnumSet
+        if (s.getClass() == HashSet.class && s.size() <= RSImmutableArraySet.MAX_SIZE
+            && !s.contains(null)) {
+          return new RSImmutableArraySet<>(s.toArray());
+        }
         return Collections.unmodifiableSet(s);
+      }
     }
   }
 
@@ -244,9 +243,96 @@ public final class RSCollectors {
         final Map.Entry<? extends K, ? extends U> firstEntry = m.entrySet().iterator().next();
         return Collections.singletonMap(firstEntry.getKey(), firstEntry.getValue());
       }
-      default:
+      default: {
+        // Only plain HashMaps are made compact, for the same reasons as in unmodifiableSetFinisher
+        if (m.getClass() == HashMap.class && m.size() <= RSImmutableArraySet.MAX_SIZE
+            && !m.containsKey(null)) {
+          return RSImmutableArrayMap.copyOf(m);
+        }
         return Collections.unmodifiableMap(m);
+      }
+    }
+  }
+
+  /**
+   * The mutable result container of {@link #toUnmodifiableList()}. The chunks collected by parallel
+   * streams are kept as they are, and they are only concatenated once in the end.
+   */
+  private static final class ListBuffer<T> {
+
+    private static final Object[] EMPTY_ELEMENTS = new Object[0];
+
+    private Object[] elements = EMPTY_ELEMENTS;
+    private int size;
+    // The chunks that come after this one, in order. Null if nothing has been combined.
+    @Nullable
+    private List<ListBuffer<T>> chunks;
+
+    void add(T t) {
+      if (size == elements.length) {
+        // Same growth policy as ArrayList
+        elements = Arrays.copyOf(elements, size == 0 ? 10 : size + (size >> 1));
+      }
+      elements[size++] = t;
     }
+
+    ListBuffer<T> combine(@Nonnull ListBuffer<T> other) {
+      if (other.size == 0 && other.chunks == null) {
+        return this;
+      }
+      if (size == 0 && chunks == null) {
+        return other;
+      }
+      if (chunks == null) {
+        chunks = new ArrayList<>();
+      }
+      chunks.add(other);
+      if (other.chunks != null) {
+        // Keep the chunks flat
+        chunks.addAll(other.chunks);
+        other.chunks = null;
+      }
+      return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<T> toUnmodifiableList() {
+      int totalSize = size;
+      if (chunks != null) {
+        for (ListBuffer<T> chunk : chunks) {
+          totalSize += chunk.size;
+        }
+      }
+      switch (totalSize) {
+        case 0:
+          return Collections.emptyList();
+        case 1: {
+          if (size == 1) {
+            return Collections.singletonList((T) elements[0]);
+          }
+          for (ListBuffer<T> chunk : chunks) {
+            if (chunk.size == 1) {
+              return Collections.singletonList((T) chunk.elements[0]);
+            }
+          }
+          throw new AssertionError();
+        }
+        default:
+          break;
+      }
+      if (chunks == null) {
+        return new RSImmutableArrayList<>(
+            size == elements.length ? elements : Arrays.copyOf(elements, size));
+      }
+      final Object[] result = Arrays.copyOf(elements, totalSize);
+      int offset = size;
+      for (ListBuffer<T> chunk : chunks) {
+        System.arraycopy(chunk.elements, 0, result, offset, chunk.size);
+        offset += chunk.size;
+      }
+      return new RSImmutableArrayList<>(result);
+    }
+
   }
 
 }
@@ -0,0 +1,104 @@
+package com.saasquatch.common.collect;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * An immutable {@link java.util.List} backed directly by an exactly sized array, without the extra
+ * wrappers of {@code Collections.unmodifiableList(Arrays.asList(array))}
+ *
+ * @author sli
+ * @see RSCollectors#toUnmodifiableList()
+ */
+@Immutable
+final class RSImmutableArrayList<E> extends AbstractList<E>
+    implements RandomAccess, Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final Object[] elements;
+
+  /**
+   * @param elements the array to use directly, which should not be modified afterwards
+   */
+  RSImmutableArrayList(@Nonnull Object[] elements) {
+    this.elements = elements;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public E get(int index) {
+    return (E) elements[index];
+  }
+
+  @Override
+  public int size() {
+    return elements.length;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    for (int i = 0; i < elements.length; i++) {
+      if (Objects.equals(o, elements[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public int lastIndexOf(Object o) {
+    for (int i = elements.length - 1; i >= 0; i--) {
+      if (Objects.equals(o, elements[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  @Override
+  public Object[] toArray() {
+    return Arrays.copyOf(elements, elements.length, Object[].class);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> T[] toArray(T[] a) {
+    if (a.length < elements.length) {
+      return (T[]) Arrays.copyOf(elements, elements.length, a.getClass());
+    }
+    System.arraycopy(elements, 0, a, 0, elements.length);
+    if (a.length > elements.length) {
+      a[elements.length] = null;
+    }
+    return a;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void forEach(Consumer<? super E> action) {
+    Objects.requireNonNull(action);
+    for (Object e : elements) {
+      action.accept((E) e);
+    }
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return Spliterators.spliterator(elements, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+  }
+
+}
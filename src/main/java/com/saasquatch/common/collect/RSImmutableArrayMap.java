@@ -0,0 +1,214 @@
+package com.saasquatch.common.collect;
+
+import static com.saasquatch.common.collect.RSImmutableArraySet.MAX_FLAT_SIZE;
+import static com.saasquatch.common.collect.RSImmutableArraySet.tableLength;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A compact immutable {@link Map} backed by a single array of alternating keys and values, without
+ * the per entry nodes of {@link java.util.HashMap}. Small maps are stored in a flat array and
+ * looked up with a linear scan. Larger maps are stored in an open addressing hash table with linear
+ * probing. Null keys are not supported, but null values are.
+ *
+ * @author sli
+ * @see RSCollectors#toUnmodifiableMap(java.util.function.Function, java.util.function.Function)
+ */
+@Immutable
+final class RSImmutableArrayMap<K, V> extends AbstractMap<K, V> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int size;
+  // Keys at even indices and values at odd indices. Exactly sized and without null keys if flat.
+  // A hash table at most half full otherwise.
+  private final Object[] table;
+
+  private RSImmutableArrayMap(int size, @Nonnull Object[] table) {
+    this.size = size;
+    this.table = table;
+  }
+
+  /**
+   * @param m a map without null keys
+   */
+  static <K, V> RSImmutableArrayMap<K, V> copyOf(@Nonnull Map<? extends K, ? extends V> m) {
+    final int size = m.size();
+    if (size <= MAX_FLAT_SIZE) {
+      final Object[] table = new Object[size * 2];
+      int i = 0;
+      for (Map.Entry<? extends K, ? extends V> entry : m.entrySet()) {
+        table[i++] = entry.getKey();
+        table[i++] = entry.getValue();
+      }
+      return new RSImmutableArrayMap<>(size, table);
+    }
+    final Object[] table = new Object[tableLength(size) * 2];
+    m.forEach((k, v) -> {
+      final int i = probe(table, k);
+      table[i] = k;
+      table[i + 1] = v;
+    });
+    return new RSImmutableArrayMap<>(size, table);
+  }
+
+  /**
+   * @return the index of the given key in the given hash table, or the index of the empty key slot
+   *         where it would be. Only works on tables with at least one empty key slot.
+   */
+  private static int probe(@Nonnull Object[] table, @Nonnull Object key) {
+    final int h = key.hashCode();
+    final int mask = (table.length >> 1) - 1;
+    for (int i = (h ^ (h >>> 16)) & mask;; i = (i + 1) & mask) {
+      final Object curr = table[i << 1];
+      if (curr == null || key.equals(curr)) {
+        return i << 1;
+      }
+    }
+  }
+
+  private boolean isFlat() {
+    return table.length == size * 2;
+  }
+
+  /**
+   * @return the index of the given key, or -1 if it is not found
+   */
+  private int indexOf(@Nullable Object key) {
+    if (key == null) {
+      return -1;
+    }
+    if (isFlat()) {
+      for (int i = 0; i < table.length; i += 2) {
+        if (key.equals(table[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+    final int i = probe(table, key);
+    return table[i] == null ? -1 : i;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean containsKey(@Nullable Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public boolean containsValue(@Nullable Object value) {
+    for (int i = 0; i < table.length; i += 2) {
+      if (table[i] != null && Objects.equals(value, table[i + 1])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V get(@Nullable Object key) {
+    final int i = indexOf(key);
+    return i < 0 ? null : (V) table[i + 1];
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V getOrDefault(@Nullable Object key, V defaultValue) {
+    final int i = indexOf(key);
+    return i < 0 ? defaultValue : (V) table[i + 1];
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    Objects.requireNonNull(action);
+    for (int i = 0; i < table.length; i += 2) {
+      if (table[i] != null) {
+        action.accept((K) table[i], (V) table[i + 1]);
+      }
+    }
+  }
+
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<Map.Entry<K, V>>() {
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new EntryIterator();
+      }
+
+    };
+  }
+
+  @Override
+  public int hashCode() {
+    int h = 0;
+    for (int i = 0; i < table.length; i += 2) {
+      if (table[i] != null) {
+        h += table[i].hashCode() ^ Objects.hashCode(table[i + 1]);
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Rebuild the hash table, since the hash codes of the keys may have changed
+   */
+  private Object readResolve() {
+    return isFlat() ? this : copyOf(this);
+  }
+
+  private final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+
+    private int index = nextIndex(0);
+
+    private int nextIndex(int from) {
+      int i = from;
+      while (i < table.length && table[i] == null) {
+        i += 2;
+      }
+      return i;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return index < table.length;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map.Entry<K, V> next() {
+      if (index >= table.length) {
+        throw new NoSuchElementException();
+      }
+      final Map.Entry<K, V> entry =
+          new SimpleImmutableEntry<>((K) table[index], (V) table[index + 1]);
+      index = nextIndex(index + 2);
+      return entry;
+    }
+
+  }
+
+}
@@ -0,0 +1,162 @@
+package com.saasquatch.common.collect;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.Consumer;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A compact immutable {@link java.util.Set} backed by a single array, without the per element
+ * nodes of {@link java.util.HashSet}. Small sets are stored in a flat array and looked up with a
+ * linear scan. Larger sets are stored in an open addressing hash table with linear probing.
+ * Null elements are not supported.
+ *
+ * @author sli
+ * @see RSCollectors#toUnmodifiableSet()
+ */
+@Immutable
+final class RSImmutableArraySet<E> extends AbstractSet<E> implements Serializable {
+
+  private static final long serialVersionUID = 1L;
+
+  // The max size of a flat array set
+  static final int MAX_FLAT_SIZE = 8;
+  // The max size that does not overflow the hash table length
+  static final int MAX_SIZE = 1 << 28;
+
+  private final int size;
+  // Exactly sized and without nulls if flat. A hash table at most half full otherwise.
+  private final Object[] table;
+
+  /**
+   * @param elements distinct non-null elements. The array is used directly if the set is flat, so
+   *        it should not be modified afterwards.
+   */
+  RSImmutableArraySet(@Nonnull Object[] elements) {
+    this.size = elements.length;
+    if (elements.length <= MAX_FLAT_SIZE) {
+      this.table = elements;
+      return;
+    }
+    this.table = new Object[tableLength(elements.length)];
+    for (Object e : elements) {
+      table[probe(table, e)] = e;
+    }
+  }
+
+  /**
+   * @return the length of a hash table with the given number of elements, which is a power of 2
+   *         at least twice the size
+   */
+  static int tableLength(int size) {
+    return Integer.highestOneBit(size * 2 - 1) << 1;
+  }
+
+  /**
+   * @return the index of the given key in the given hash table, or the index of the empty slot
+   *         where it would be. Only works on tables with at least one empty slot.
+   */
+  static int probe(@Nonnull Object[] table, @Nonnull Object key) {
+    final int h = key.hashCode();
+    final int mask = table.length - 1;
+    for (int i = (h ^ (h >>> 16)) & mask;; i = (i + 1) & mask) {
+      final Object curr = table[i];
+      if (curr == null || key.equals(curr)) {
+        return i;
+      }
+    }
+  }
+
+  private boolean isFlat() {
+    return table.length == size;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean contains(@Nullable Object o) {
+    if (o == null) {
+      return false;
+    }
+    if (isFlat()) {
+      for (Object e : table) {
+        if (o.equals(e)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return table[probe(table, o)] != null;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+
+      private int index = nextIndex(0);
+
+      private int nextIndex(int from) {
+        int i = from;
+        while (i < table.length && table[i] == null) {
+          i++;
+        }
+        return i;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return index < table.length;
+      }
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public E next() {
+        if (index >= table.length) {
+          throw new NoSuchElementException();
+        }
+        final E e = (E) table[index];
+        index = nextIndex(index + 1);
+        return e;
+      }
+
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void forEach(Consumer<? super E> action) {
+    Objects.requireNonNull(action);
+    for (Object e : table) {
+      if (e != null) {
+        action.accept((E) e);
+      }
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    int h = 0;
+    for (Object e : table) {
+      if (e != null) {
+        h += e.hashCode();
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Rebuild the hash table, since the hash codes of the elements may have changed
+   */
+  private Object readResolve() {
+    return isFlat() ? this : new RSImmutableArraySet<>(toArray());
+  }
+
+}
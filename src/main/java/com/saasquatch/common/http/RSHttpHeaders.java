@@ -2,23 +2,31 @@ package com.saasquatch.common.http;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import java.util.AbstractMap.SimpleImmutableEntry;
-import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import com.saasquatch.common.base.RSStringInterner;
+import com.saasquatch.common.base.RSStrings;
 import com.saasquatch.common.collect.RSCollectors;
 
 public final class RSHttpHeaders {
 
   private static final String BASIC_PREFIX = "Basic ";
   private static final String BEARER_PREFIX = "Bearer ";
+  private static final String IDENTITY_ENCODING = "identity";
+  private static final String ANY_ENCODING = "*";
+  private static final Collector<String, ?, Set<String>> ENCODING_SET_COLLECTOR =
+      RSCollectors.toUnmodifiableSet();
 
   private RSHttpHeaders() {}
 
@@ -67,31 +75,118 @@ public final class RSHttpHeaders {
    * Get a list of content encodings from Accept-Encoding header
    */
   public static Set<String> getAcceptedEncodings(@Nullable String acceptEncoding) {
+    return acceptedEncodings(acceptEncoding, null);
+  }
+
+  /**
+   * Get a list of content encodings from Accept-Encoding header, where the encodings are the
+   * canonical instances from the given {@link RSStringInterner}
+   */
+  public static Set<String> getAcceptedEncodings(@Nullable String acceptEncoding,
+      @Nonnull RSStringInterner interner) {
+    return acceptedEncodings(acceptEncoding, Objects.requireNonNull(interner));
+  }
+
+  /**
+   * @param interner the interner for the encodings, or null to not intern
+   */
+  private static Set<String> acceptedEncodings(@Nullable String acceptEncoding,
+      @Nullable RSStringInterner interner) {
     if (acceptEncoding == null)
       return Collections.emptySet();
-    return Arrays.stream(acceptEncoding.split(","))
-        .map(s -> {
-          final int idx = s.indexOf(';');
-          return idx < 0 ? s : s.substring(0, idx);
-        })
-        .map(String::trim)
-        .filter(s -> s.length() > 0)
-        .map(s -> s.toLowerCase(Locale.ROOT))
-        .filter(s -> !"identity".equals(s))
-        .filter(s -> !"*".equals(s))
-        .collect(RSCollectors.toUnmodifiableSet());
+    return acceptedEncodings(Collections.singletonList(acceptEncoding), interner,
+        ENCODING_SET_COLLECTOR);
   }
 
   /**
    * Get a list of content encodings from Accept-Encoding header
    */
   public static Set<String> getAcceptedEncodings(@Nullable Collection<String> acceptEncoding) {
+    return acceptedEncodings(acceptEncoding, null);
+  }
+
+  /**
+   * Get a list of content encodings from Accept-Encoding header, where the encodings are the
+   * canonical instances from the given {@link RSStringInterner}
+   */
+  public static Set<String> getAcceptedEncodings(@Nullable Collection<String> acceptEncoding,
+      @Nonnull RSStringInterner interner) {
+    return acceptedEncodings(acceptEncoding, Objects.requireNonNull(interner));
+  }
+
+  private static Set<String> acceptedEncodings(@Nullable Collection<String> acceptEncoding,
+      @Nullable RSStringInterner interner) {
     if (acceptEncoding == null || acceptEncoding.isEmpty())
       return Collections.emptySet();
-    return acceptEncoding.stream()
-        .map(RSHttpHeaders::getAcceptedEncodings)
-        .flatMap(Collection::stream)
-        .collect(RSCollectors.toUnmodifiableSet());
+    return acceptedEncodings(acceptEncoding, interner, ENCODING_SET_COLLECTOR);
+  }
+
+  /**
+   * Parse the given header values into one result container of the given {@link Collector}, so the
+   * result is the same type of Set as the other Sets from {@link RSCollectors}
+   */
+  private static <A> Set<String> acceptedEncodings(@Nonnull Collection<String> acceptEncoding,
+      @Nullable RSStringInterner interner, @Nonnull Collector<String, A, Set<String>> collector) {
+    final A result = collector.supplier().get();
+    final BiConsumer<A, String> accumulator = collector.accumulator();
+    for (String value : acceptEncoding) {
+      if (value == null) {
+        continue;
+      }
+      final int len = value.length();
+      int tokenStart = 0;
+      while (tokenStart <= len) {
+        int tokenEnd = value.indexOf(',', tokenStart);
+        final int nextTokenStart = tokenEnd < 0 ? len + 1 : tokenEnd + 1;
+        if (tokenEnd < 0) {
+          tokenEnd = len;
+        }
+        // Strip the parameters and trim the token without making copies
+        int start = tokenStart;
+        int end = tokenEnd;
+        for (int i = start; i < end; i++) {
+          if (value.charAt(i) == ';') {
+            end = i;
+            break;
+          }
+        }
+        while (start < end && value.charAt(start) <= ' ') {
+          start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+          end--;
+        }
+        if (start < end && !isTokenIgnoreCase(value, start, end, IDENTITY_ENCODING)
+            && !isTokenIgnoreCase(value, start, end, ANY_ENCODING)) {
+          accumulator.accept(result, lowerCaseToken(value, start, end, interner));
+        }
+        tokenStart = nextTokenStart;
+      }
+    }
+    return collector.finisher().apply(result);
+  }
+
+  /**
+   * Lower case the token between the given indices, and intern it if an interner is given. The
+   * interner is looked up straight from the range if the token is already lower case.
+   */
+  private static String lowerCaseToken(String s, int start, int end,
+      @Nullable RSStringInterner interner) {
+    if (interner == null) {
+      return RSStrings.toAsciiLowerCase(s, start, end);
+    }
+    for (int i = start; i < end; i++) {
+      final char c = s.charAt(i);
+      if (c >= 'A' && c <= 'Z') {
+        return interner.intern(RSStrings.toAsciiLowerCase(s, start, end));
+      }
+    }
+    return interner.intern(s, start, end);
+  }
+
+  private static boolean isTokenIgnoreCase(String s, int start, int end, String token) {
+    return end - start == token.length()
+        && RSStrings.regionMatches(s, true, start, token, 0, token.length());
   }
 
 }
@@ -0,0 +1,45 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import com.saasquatch.common.concurrent.RSThreads;
+
+public class RSCharsetCodersTest {
+
+  private static final Charset SHIFT_JIS = Charset.forName("Shift_JIS");
+
+  @Test
+  public void testReuse() throws Exception {
+    final CharsetEncoder encoder = RSCharsetCoders.encoder(SHIFT_JIS, CodingErrorAction.REPORT);
+    assertSame(encoder, RSCharsetCoders.encoder(SHIFT_JIS, CodingErrorAction.REPLACE));
+    assertEquals(CodingErrorAction.REPLACE, encoder.malformedInputAction());
+    assertEquals(CodingErrorAction.REPLACE, encoder.unmappableCharacterAction());
+    assertSame(RSCharsetCoders.decoder(SHIFT_JIS, CodingErrorAction.REPLACE),
+        RSCharsetCoders.decoder(SHIFT_JIS, CodingErrorAction.REPORT));
+    // Other threads get their own coders
+    assertNotSame(encoder, CompletableFuture.supplyAsync(
+        () -> RSCharsetCoders.encoder(SHIFT_JIS, CodingErrorAction.REPORT)).get());
+  }
+
+  @Test
+  public void testClearThreadLocals() throws Exception {
+    final Thread t = new Thread(() -> {
+      final CharsetEncoder encoder = RSCharsetCoders.encoder(SHIFT_JIS, CodingErrorAction.REPORT);
+      RSThreads.clearThreadLocals(Thread.currentThread());
+      assertNotSame(encoder, RSCharsetCoders.encoder(SHIFT_JIS, CodingErrorAction.REPORT));
+    });
+    final Throwable[] error = new Throwable[1];
+    t.setUncaughtExceptionHandler((thread, e) -> error[0] = e);
+    t.start();
+    t.join();
+    assertNull(error[0]);
+  }
+
+}
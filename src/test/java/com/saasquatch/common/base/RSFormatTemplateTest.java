@@ -0,0 +1,69 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.IllegalFormatConversionException;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.UnknownFormatConversionException;
+import org.junit.jupiter.api.Test;
+
+public class RSFormatTemplateTest {
+
+  private static final String[] FORMATS = {"", "x", "%s", "a%sb%dc", "%%%n%s", "%5d|%-3s|",
+      "%1$s %1$s", "%s %<s", "%.2f", "%S", "%tY", "%s %s", "%-4%", "%,d", "%08X", "%b",
+      "%.2s|%-6.3s|%8.1s", "%08d|%-7d|%3d", "%x|%5X|%-6x", "%#x|%#010X|%-#8x|%012x", "%0s",
+      "%#s", "%+d", "%-d", "%-08d", "%.1d", "%#d"};
+  private static final Object[][] ARGS = {{"x", 5}, {null, null}, {12345L, "é"},
+      {(byte) -3, 'c'}, {Integer.MIN_VALUE, Long.MAX_VALUE},
+      {new BigInteger("123456789012345678901")}, {new Date(0)},
+      {-42, (short) -1, Long.MIN_VALUE, 0}, {"hello", "\uD83D\uDE00ab", 255, (byte) 127},
+      {(short) 300, -1L, -255, 123456789}};
+
+  @Test
+  public void testSameAsFormat() {
+    for (String format : FORMATS) {
+      final RSFormatTemplate template = RSStrings.compile(format);
+      assertEquals(format, template.toString());
+      for (Object[] args : ARGS) {
+        String expected;
+        try {
+          expected = RSStrings.format(format, args);
+        } catch (RuntimeException e) {
+          assertThrows(e.getClass(), () -> template.format(args));
+          continue;
+        }
+        assertEquals(expected, template.format(args));
+        assertEquals("prefix" + expected,
+            template.formatTo(new StringBuilder("prefix"), args).toString());
+      }
+    }
+  }
+
+  @Test
+  public void testLocaleRoot() {
+    final Locale defaultLocale = Locale.getDefault();
+    Locale.setDefault(new Locale("ar", "EG"));
+    try {
+      assertEquals("1.500000 -12", RSStrings.compile("%f %d").format(1.5, -12));
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+  }
+
+  @Test
+  public void testErrors() {
+    assertThrows(NullPointerException.class, () -> RSStrings.compile(null));
+    assertThrows(MissingFormatArgumentException.class, () -> RSStrings.compile("%s").format());
+    assertThrows(IllegalFormatConversionException.class,
+        () -> RSStrings.compile("%d").format("a"));
+    assertThrows(UnknownFormatConversionException.class, () -> RSStrings.compile("%q").format());
+    assertThrows(UnknownFormatConversionException.class, () -> RSStrings.compile("100%").format());
+    assertThrows(NullPointerException.class, () -> RSStrings.compile("%s").formatTo(null, 1));
+    // Same as String.format
+    assertEquals("null", RSStrings.compile("%s").format((Object[]) null));
+  }
+
+}
@@ -0,0 +1,130 @@
+package com.saasquatch.common.base;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.Test;
+import com.google.common.collect.ImmutableMap;
+
+public class RSQueryStringTest {
+
+  @Test
+  public void testNull() {
+    assertThrows(NullPointerException.class, () -> RSQueryString.parse(null));
+    assertThrows(NullPointerException.class, () -> RSQueryString.parse("", null));
+    assertThrows(NullPointerException.class, () -> RSQueryString.parse("a=b").getFirst(null));
+  }
+
+  @Test
+  public void testBasic() {
+    final RSQueryString qs = RSQueryString.parse("?a=1&b=hello+world&c=%E2%9C%93&a=2");
+    assertEquals(4, qs.size());
+    assertFalse(qs.isEmpty());
+    assertEquals("a", qs.getName(0));
+    assertEquals("1", qs.getValue(0));
+    assertEquals("hello world", qs.getValue(1));
+    assertEquals("✓", qs.getValue(2));
+    assertEquals(Optional.of("1"), qs.getFirst("a"));
+    assertEquals(Arrays.asList("1", "2"), qs.getAll("a"));
+    assertEquals(Collections.singletonList("hello world"), qs.getAll("b"));
+    assertEquals(Collections.emptyList(), qs.getAll("d"));
+    assertEquals(Optional.empty(), qs.getFirst("d"));
+    assertTrue(qs.containsName("c"));
+    assertFalse(qs.containsName("d"));
+    assertThrows(UnsupportedOperationException.class, () -> qs.getAll("a").add(""));
+    assertThrows(IndexOutOfBoundsException.class, () -> qs.getName(4));
+    assertThrows(IndexOutOfBoundsException.class, () -> qs.getValue(-1));
+  }
+
+  @Test
+  public void testEdgeCases() {
+    assertTrue(RSQueryString.parse("").isEmpty());
+    assertTrue(RSQueryString.parse("?").isEmpty());
+    assertTrue(RSQueryString.parse("&&&").isEmpty());
+    final RSQueryString qs = RSQueryString.parse("a&&b=&=c&d==e&");
+    assertEquals(4, qs.size());
+    assertEquals(Optional.of(""), qs.getFirst("a"));
+    assertEquals(Optional.of(""), qs.getFirst("b"));
+    assertEquals(Optional.of("c"), qs.getFirst(""));
+    assertEquals(Optional.of("=e"), qs.getFirst("d"));
+  }
+
+  @Test
+  public void testEncodedNames() {
+    final RSQueryString qs = RSQueryString.parse("first+name=Foo&last%20name=Bar&x%26y=%3D");
+    assertEquals(Optional.of("Foo"), qs.getFirst("first name"));
+    assertEquals(Optional.of("Bar"), qs.getFirst("last name"));
+    assertEquals(Optional.of("="), qs.getFirst("x&y"));
+    assertFalse(qs.containsName("first+name"));
+    final Map<String, List<String>> expected = ImmutableMap.of("first name",
+        Arrays.asList("Foo"), "last name", Arrays.asList("Bar"), "x&y", Arrays.asList("="));
+    assertEquals(expected, qs.toMap());
+    assertThrows(UnsupportedOperationException.class, () -> qs.toMap().clear());
+  }
+
+  @Test
+  public void testDecoderConfig() {
+    final String s = "a=%E9+%&b=1";
+    assertThrows(IllegalArgumentException.class, () -> RSQueryString.parse(s).getValue(0));
+    // Parameters that are not accessed are not decoded
+    assertEquals("1", RSQueryString.parse(s).getValue(1));
+    final RSUrlCodec.Decoder decoder =
+        RSUrlCodec.getLenientDecoder().withCharset(ISO_8859_1).decodePlusToSpace(false);
+    assertEquals("é+%", RSQueryString.parse(s, decoder).getValue(0));
+  }
+
+  @Test
+  public void testLookupSkipsInvalidNames() {
+    final RSQueryString qs = RSQueryString.parse("%zz=1&b=2&%=3&b=4");
+    assertEquals(Optional.of("2"), qs.getFirst("b"));
+    assertEquals(Arrays.asList("2", "4"), qs.getAll("b"));
+    assertTrue(qs.containsName("b"));
+    assertFalse(qs.containsName("%zz"));
+    assertEquals(Optional.empty(), qs.getFirst("c"));
+    // The error still surfaces when the name itself is accessed
+    assertThrows(IllegalArgumentException.class, () -> qs.getName(0));
+    assertThrows(IllegalArgumentException.class, () -> qs.getName(2));
+  }
+
+  @Test
+  public void testInterner() {
+    final RSStringInterner interner = RSStringInterner.create(16);
+    assertThrows(NullPointerException.class,
+        () -> RSQueryString.parse("a=b", RSUrlCodec.getDecoder(), null));
+    final RSQueryString qs1 =
+        RSQueryString.parse("tenant=t%31&user=u1", RSUrlCodec.getDecoder(), interner);
+    final RSQueryString qs2 = RSQueryString.parse(new StringBuilder("user=u1&tenant=t1"),
+        RSUrlCodec.getDecoder(), interner);
+    assertSame(qs1.getName(0), qs2.getName(1));
+    assertSame(qs1.getValue(0), qs2.getValue(1));
+    assertSame(qs1.getValue(1), qs2.getFirst("user").get());
+    assertEquals("t1", qs1.getValue(0));
+    assertSame(interner.intern("tenant"), qs2.getName(1));
+  }
+
+  @Test
+  public void testRandom() {
+    for (int i = 0; i < 128; i++) {
+      final String name = RandomStringUtils.random(16);
+      final String value = RandomStringUtils.random(32);
+      final StringBuilder sb = new StringBuilder("foo=bar&");
+      RSUrlCodec.getFormEncoder().encodeTo(name, sb).append('=');
+      RSUrlCodec.getFormEncoder().encodeTo(value, sb);
+      final RSQueryString qs = RSQueryString.parse(sb);
+      assertEquals(2, qs.size());
+      assertEquals(name, qs.getName(1));
+      assertEquals(Optional.of(value), qs.getFirst(name));
+      assertEquals(sb.toString(), qs.toString());
+    }
+  }
+
+}
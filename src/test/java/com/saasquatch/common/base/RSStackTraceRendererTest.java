@@ -0,0 +1,217 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import org.junit.jupiter.api.Test;
+
+public class RSStackTraceRendererTest {
+
+  @Test
+  public void testInvalidInput() {
+    final RSStackTraceRenderer renderer = RSStackTraceRenderer.getDefault();
+    assertThrows(IllegalArgumentException.class, () -> renderer.withMaxFramesPerThrowable(-1));
+    assertThrows(IllegalArgumentException.class, () -> renderer.withMaxBytes(-1));
+    assertThrows(IllegalArgumentException.class, () -> renderer.withCacheSize(-1));
+    assertThrows(NullPointerException.class, () -> renderer.withExcludedPackages((String) null));
+    assertThrows(NullPointerException.class, () -> renderer.render(null));
+    assertThrows(NullPointerException.class, () -> renderer.renderTo(null, new Exception()));
+  }
+
+  @Test
+  public void testWithSameConfig() {
+    final RSStackTraceRenderer renderer = RSStackTraceRenderer.getDefault();
+    assertSame(renderer, renderer.withMaxFramesPerThrowable(64));
+    assertSame(renderer, renderer.withMaxBytes(32 * 1024));
+    assertSame(renderer, renderer.withExcludedPackages());
+    assertSame(renderer, renderer.withCacheSize(0));
+    final RSStackTraceRenderer filtered = renderer.withExcludedPackages("foo");
+    assertNotSame(renderer, filtered);
+    assertSame(filtered, filtered.withExcludedPackages("foo"));
+  }
+
+  @Test
+  public void testSameAsPrintStackTrace() {
+    final RSStackTraceRenderer renderer =
+        RSStackTraceRenderer.getDefault().withMaxFramesPerThrowable(0).withMaxBytes(0);
+    final Exception cause = new IOException("cause");
+    final Exception e = new RuntimeException("outer", cause);
+    e.addSuppressed(new IllegalStateException("suppressed"));
+    cause.addSuppressed(new IllegalArgumentException("suppressed", new Exception()));
+    assertEquals(printStackTrace(e), renderer.render(e));
+    assertEquals(printStackTrace(e), renderer.renderTo(new StringBuilder(), e).toString());
+  }
+
+  @Test
+  public void testFrameLimit() {
+    final Exception e = new Exception("foo");
+    e.setStackTrace(frames("a", 10));
+    final String rendered =
+        RSStackTraceRenderer.getDefault().withMaxFramesPerThrowable(3).render(e);
+    final String[] lines = rendered.split(System.lineSeparator());
+    assertEquals(5, lines.length);
+    assertEquals("java.lang.Exception: foo", lines[0]);
+    assertEquals("\tat a.C0.m(C.java:0)", lines[1]);
+    assertEquals("\tat a.C2.m(C.java:2)", lines[3]);
+    assertEquals("\t... 7 more", lines[4]);
+  }
+
+  @Test
+  public void testCommonFramesFolding() {
+    final StackTraceElement[] outerFrames = frames("a", 5);
+    final StackTraceElement[] causeFrames = new StackTraceElement[7];
+    System.arraycopy(frames("b", 2), 0, causeFrames, 0, 2);
+    System.arraycopy(outerFrames, 0, causeFrames, 2, 5);
+    final Exception cause = new Exception("cause");
+    cause.setStackTrace(causeFrames);
+    final Exception e = new Exception("outer", cause);
+    e.setStackTrace(outerFrames);
+    // The frames cut by the limit are merged with the frames in common
+    final String[] lines = RSStackTraceRenderer.getDefault().withMaxFramesPerThrowable(1)
+        .render(e).split(System.lineSeparator());
+    assertEquals("\tat a.C0.m(C.java:0)", lines[1]);
+    assertEquals("\t... 4 more", lines[2]);
+    assertEquals("Caused by: java.lang.Exception: cause", lines[3]);
+    assertEquals("\tat b.C0.m(C.java:0)", lines[4]);
+    assertEquals("\t... 6 more", lines[5]);
+    assertEquals(6, lines.length);
+  }
+
+  @Test
+  public void testExcludedPackages() {
+    final StackTraceElement[] frames = new StackTraceElement[] {
+        new StackTraceElement("a.A", "m", "A.java", 1),
+        new StackTraceElement("reactor.core.B", "m", "B.java", 2),
+        new StackTraceElement("reactor.core.publisher.C", "m", "C.java", 3),
+        new StackTraceElement("reactorx.D", "m", "D.java", 4),
+        new StackTraceElement("reactor.core.E", "m", "E.java", 5),
+    };
+    final Exception e = new Exception();
+    e.setStackTrace(frames);
+    final String[] lines = RSStackTraceRenderer.getDefault().withExcludedPackages("reactor.core")
+        .render(e).split(System.lineSeparator());
+    assertEquals(5, lines.length);
+    assertEquals("\tat a.A.m(A.java:1)", lines[1]);
+    assertEquals("\t... 2 filtered", lines[2]);
+    assertEquals("\tat reactorx.D.m(D.java:4)", lines[3]);
+    assertEquals("\t... 1 filtered", lines[4]);
+  }
+
+  @Test
+  public void testMaxBytes() {
+    final Exception e = new Exception("éééé");
+    e.setStackTrace(frames("a", 100));
+    final RSStackTraceRenderer unlimited = RSStackTraceRenderer.getDefault().withMaxBytes(0);
+    final String full = unlimited.render(e);
+    for (int maxBytes : new int[] {1, 21, 22, 23, 50, 1000}) {
+      final String rendered = unlimited.withMaxBytes(maxBytes).render(e);
+      assertTrue(RSStrings.utf8Length(rendered) <= maxBytes);
+      assertTrue(full.startsWith(rendered));
+      assertTrue(RSStrings.utf8Length(rendered) > maxBytes - 40);
+    }
+    assertEquals(full, unlimited.withMaxBytes(RSStrings.utf8Length(full)).render(e));
+  }
+
+  @Test
+  public void testCircularReference() {
+    final Exception e1 = new Exception("e1");
+    final Exception e2 = new Exception("e2", e1);
+    e1.initCause(e2);
+    final String[] lines =
+        RSStackTraceRenderer.getDefault().render(e1).split(System.lineSeparator());
+    assertEquals("java.lang.Exception: e1", lines[0]);
+    assertEquals("Caused by: java.lang.Exception: e2", lines[lines.length - 4]);
+    assertEquals("Caused by: [CIRCULAR REFERENCE: java.lang.Exception: e1]",
+        lines[lines.length - 1]);
+  }
+
+  @Test
+  public void testCache() {
+    final RSStackTraceRenderer renderer = RSStackTraceRenderer.getDefault().withCacheSize(2);
+    final Exception[] sameFailures = new Exception[2];
+    for (int i = 0; i < sameFailures.length; i++) {
+      sameFailures[i] = new Exception("foo", new IOException("bar"));
+      sameFailures[i].setStackTrace(frames("a", 3));
+    }
+    final String rendered = renderer.render(sameFailures[0]);
+    assertSame(rendered, renderer.render(sameFailures[1]));
+    assertEquals(rendered, renderer.renderTo(new StringBuilder(), sameFailures[1]).toString());
+    // Different messages are not mixed up
+    final Exception differentMessage = new Exception("foo", new IOException("baz"));
+    differentMessage.setStackTrace(frames("a", 3));
+    assertFalse(rendered.equals(renderer.render(differentMessage)));
+    // Suppressed exceptions are not cached
+    sameFailures[1].addSuppressed(new Exception());
+    final String withSuppressed = renderer.render(sameFailures[1]);
+    assertEquals(printStackTrace(sameFailures[1]), withSuppressed);
+    assertNotSame(withSuppressed, renderer.render(sameFailures[1]));
+  }
+
+  @Test
+  public void testCacheKeyCollisions() {
+    final RSStackTraceRenderer renderer = RSStackTraceRenderer.getDefault().withCacheSize(8);
+    // "Aa" and "BB" have the same hash code
+    final Exception aa = new Exception("Aa");
+    final Exception bb = new Exception("BB");
+    aa.setStackTrace(frames("a", 3));
+    bb.setStackTrace(frames("a", 3));
+    assertEquals(printStackTrace(aa), renderer.render(aa));
+    assertEquals(printStackTrace(bb), renderer.render(bb));
+    // Different frames are not mixed up
+    final Exception differentFrames = new Exception("Aa");
+    differentFrames.setStackTrace(frames("b", 3));
+    assertEquals(printStackTrace(differentFrames), renderer.render(differentFrames));
+    // A circular reference is not mixed up with the end of the chain
+    final Exception e1 = new Exception("e1");
+    final Exception e2 = new Exception("e2", e1);
+    e1.setStackTrace(frames("a", 3));
+    e2.setStackTrace(frames("a", 3));
+    final String acyclic = renderer.render(e1);
+    e1.initCause(e2);
+    assertFalse(acyclic.equals(renderer.render(e1)));
+    assertTrue(renderer.render(e1).contains("[CIRCULAR REFERENCE: java.lang.Exception: e1]"));
+  }
+
+  @Test
+  public void testAppendableException() {
+    final Writer writer = new Writer() {
+      @Override
+      public void write(char[] cbuf, int off, int len) throws IOException {
+        throw new IOException();
+      }
+
+      @Override
+      public void flush() {}
+
+      @Override
+      public void close() {}
+    };
+    assertThrows(UncheckedIOException.class,
+        () -> RSStackTraceRenderer.getDefault().renderTo(writer, new Exception()));
+    assertThrows(UncheckedIOException.class, () -> RSStackTraceRenderer.getDefault()
+        .withCacheSize(1).renderTo(writer, new Exception()));
+  }
+
+  private static StackTraceElement[] frames(String packageName, int count) {
+    final StackTraceElement[] frames = new StackTraceElement[count];
+    for (int i = 0; i < count; i++) {
+      frames[i] = new StackTraceElement(packageName + ".C" + i, "m", "C.java", i);
+    }
+    return frames;
+  }
+
+  private static String printStackTrace(Throwable t) {
+    final StringWriter sw = new StringWriter();
+    t.printStackTrace(new PrintWriter(sw));
+    return sw.toString();
+  }
+
+}
@@ -0,0 +1,74 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Test;
+
+public class RSStacklessExceptionTest {
+
+  @Test
+  public void testStackless() {
+    final NotFoundException e = NotFoundException.INSTANCE;
+    assertEquals("Not found", e.getMessage());
+    assertNull(e.getCause());
+    assertEquals(0, e.getStackTrace().length);
+    e.setStackTrace(new Exception().getStackTrace());
+    assertEquals(0, e.getStackTrace().length);
+    e.addSuppressed(new Exception());
+    assertEquals(0, e.getSuppressed().length);
+    assertThrows(IllegalStateException.class, () -> e.initCause(new Exception()));
+    assertNull(e.getCause());
+  }
+
+  @Test
+  public void testCaptureStackTrace() {
+    final IOException cause = new IOException();
+    final ValidationException e = new ValidationException("invalid", cause);
+    assertSame(cause, e.getCause());
+    assertTrue(e.getStackTrace().length > 0);
+    e.addSuppressed(new Exception());
+    assertEquals(0, e.getSuppressed().length);
+  }
+
+  @Test
+  public void testRSThrowables() {
+    try {
+      RSThrowables.wrapAndThrow(NotFoundException.INSTANCE);
+      fail();
+    } catch (NotFoundException e) {
+      assertSame(NotFoundException.INSTANCE, e);
+    }
+    final CompletionException wrapped = new CompletionException(NotFoundException.INSTANCE);
+    assertSame(NotFoundException.INSTANCE,
+        RSThrowables.findFirstInCauseChain(wrapped, RSStacklessException.class).get());
+    assertThrows(NotFoundException.class,
+        () -> RSThrowables.unwrapAndThrow(wrapped, NotFoundException.class));
+  }
+
+  static class NotFoundException extends RSStacklessException {
+    private static final long serialVersionUID = 1L;
+
+    static final NotFoundException INSTANCE = new NotFoundException();
+
+    private NotFoundException() {
+      super("Not found");
+    }
+
+  }
+
+  static class ValidationException extends RSStacklessException {
+    private static final long serialVersionUID = 1L;
+
+    ValidationException(String message, Throwable cause) {
+      super(message, cause, true);
+    }
+
+  }
+
+}
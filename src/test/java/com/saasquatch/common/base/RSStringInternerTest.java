@@ -0,0 +1,118 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class RSStringInternerTest {
+
+  @Test
+  public void testInvalidArgs() {
+    assertThrows(IllegalArgumentException.class, () -> RSStringInterner.create(0));
+    assertThrows(IllegalArgumentException.class, () -> RSStringInterner.create(-1));
+    assertThrows(IllegalArgumentException.class,
+        () -> RSStringInterner.create(Integer.MAX_VALUE));
+    final RSStringInterner interner = RSStringInterner.create(16);
+    assertThrows(NullPointerException.class, () -> interner.intern((CharSequence) null));
+    assertThrows(NullPointerException.class, () -> interner.intern((CharSequence) null, 0, 0));
+    assertThrows(NullPointerException.class, () -> interner.intern((char[]) null, 0, 0));
+    assertThrows(IndexOutOfBoundsException.class, () -> interner.intern("abc", -1, 2));
+    assertThrows(IndexOutOfBoundsException.class, () -> interner.intern("abc", 2, 1));
+    assertThrows(IndexOutOfBoundsException.class, () -> interner.intern("abc", 0, 4));
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> interner.intern(new char[3], 1, 3));
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> interner.intern(new char[3], 0, -1));
+  }
+
+  @Test
+  public void testIntern() {
+    final RSStringInterner interner = RSStringInterner.create(16);
+    final String s = new String("tenant-123");
+    assertSame(s, interner.intern(s));
+    assertSame(s, interner.intern(new String("tenant-123")));
+    assertSame(s, interner.intern(new StringBuilder("tenant-123")));
+    assertSame(s, interner.intern("?tenant-123&", 1, 11));
+    assertSame(s, interner.intern(new StringBuilder("?tenant-123&"), 1, 11));
+    assertSame(s, interner.intern("?tenant-123&".toCharArray(), 1, 10));
+    final String fromChars = interner.intern("user-1".toCharArray(), 0, 6);
+    assertEquals("user-1", fromChars);
+    assertSame(fromChars, interner.intern("user-1"));
+    assertEquals("", interner.intern("abc", 1, 1));
+    assertSame(interner.intern(""), interner.intern(new StringBuilder()));
+  }
+
+  @Test
+  public void testBounded() {
+    final RSStringInterner interner = RSStringInterner.create(16);
+    for (int i = 0; i < 1000; i++) {
+      interner.intern(new String("id" + i));
+    }
+    for (int i = 0; i < 1000; i++) {
+      // Always equal, but not necessarily the same instance
+      assertEquals("id" + i, interner.intern("id" + i));
+    }
+    // The latest one is always kept
+    final String last = interner.intern(new String("last"));
+    assertSame(last, interner.intern(new StringBuilder("last")));
+  }
+
+  @Test
+  public void testHashCollisions() {
+    final RSStringInterner interner = RSStringInterner.create(16);
+    // "Aa" and "BB" have the same hash, and they can both be kept
+    final String aa = interner.intern(new String("Aa"));
+    final String bb = interner.intern(new String("BB"));
+    assertEquals("Aa", aa);
+    assertEquals("BB", bb);
+    assertSame(aa, interner.intern(new StringBuilder("Aa")));
+    assertSame(bb, interner.intern(new StringBuilder("BB")));
+    assertNotSame(aa, bb);
+  }
+
+  @Test
+  public void testDecode() {
+    final RSStringInterner interner = RSStringInterner.create(16);
+    final RSUrlCodec.Decoder decoder = RSUrlCodec.getDecoder();
+    final String decoded = decoder.decode(new StringBuilder("a%20b"), interner);
+    assertEquals("a b", decoded);
+    assertSame(decoded, decoder.decode("a%20b", interner));
+    // The interner is shared by decoders with different configs
+    assertSame(decoded, RSUrlCodec.getDecoder().decodePlusToSpace(true).decode("a+b", interner));
+    final String plain = decoder.decode(new StringBuilder("ab"), interner);
+    assertEquals("ab", plain);
+    assertSame(plain, decoder.decode(new StringBuilder("ab"), interner));
+    assertSame(plain, RSUrlCodec.getDecoder().decodePlusToSpace(true).decode("ab", interner));
+    assertThrows(NullPointerException.class, () -> decoder.decode("a", null));
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    final RSStringInterner interner = RSStringInterner.create(64);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10000; i++) {
+            final String s = "id" + (i % 100);
+            assertEquals(s, interner.intern(new StringBuilder(s)));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
@@ -2,11 +2,15 @@ package com.saasquatch.common.base;
 
 import static java.nio.charset.StandardCharsets.UTF_16BE;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.Test;
 
@@ -29,6 +33,73 @@ public class RSStringsTest {
     }
   }
 
+  @Test
+  public void testUtf8ByteSizeTruncationBoundaries() {
+    for (int i = 0; i < 1024; i++) {
+      final String s = RandomStringUtils.random(64);
+      for (int maxBytes = 0; maxBytes < 300; maxBytes += 7) {
+        final String truncated = RSStrings.truncateToUtf8ByteSize(s, maxBytes);
+        assertTrue(s.startsWith(truncated));
+        final int size = truncated.getBytes(UTF_8).length;
+        assertTrue(size <= maxBytes);
+        if (truncated.length() < s.length()) {
+          // The next code point would not have fit
+          assertTrue(size + s.substring(truncated.length())
+              .substring(0, Character.charCount(s.codePointAt(truncated.length())))
+              .getBytes(UTF_8).length > maxBytes);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testUtf8ByteSizeTruncationSurrogates() {
+    final String smile = new String(Character.toChars(0x1F600));
+    assertEquals("a", RSStrings.truncateToUtf8ByteSize("a" + smile, 4));
+    assertEquals("a" + smile, RSStrings.truncateToUtf8ByteSize("a" + smile, 5));
+    assertEquals("\u00e9", RSStrings.truncateToUtf8ByteSize("\u00e9\u00e9", 3));
+    // Cut off at unpaired surrogates like the CharsetEncoder does
+    assertEquals("a", RSStrings.truncateToUtf8ByteSize("a\uD800b", 100));
+    assertEquals("a", RSStrings.truncateToUtf8ByteSize("a\uDC00b", 100));
+    assertEquals("a", RSStrings.truncateToByteSize("a\uD800", 100, UTF_8));
+  }
+
+  @Test
+  public void testUtf8Length() {
+    for (int i = 0; i < 1024; i++) {
+      final String s = RandomStringUtils.random(i % 64);
+      assertEquals(s.getBytes(UTF_8).length, RSStrings.utf8Length(s));
+    }
+    assertEquals(0, RSStrings.utf8Length(""));
+    assertEquals(6, RSStrings.utf8Length(new StringBuilder("a\u00e9\u4e2d")));
+    // Unpaired surrogates are replaced with '?'
+    assertEquals(3, RSStrings.utf8Length("a\uD800b"));
+    assertEquals(1, RSStrings.utf8Length("\uDC00"));
+    assertThrows(NullPointerException.class, () -> RSStrings.utf8Length(null));
+  }
+
+  @Test
+  public void testUtf8ByteBudget() {
+    assertArrayEquals(new String[] {"abc", null, "\u00e9\u00e9", "he", ""},
+        RSStrings.truncateToUtf8ByteBudget(
+            new String[] {"abc", null, "\u00e9\u00e9\u00e9", "hello", "world"}, 4, 9));
+    final Map<String, String> fields = new LinkedHashMap<>();
+    fields.put("a", "abcdef");
+    fields.put("b", null);
+    fields.put("c", "xyz");
+    final Map<String, String> truncated = RSStrings.truncateToUtf8ByteBudget(fields, 4, 6);
+    assertEquals("{a=abcd, b=null, c=xy}", truncated.toString());
+    assertThrows(UnsupportedOperationException.class, () -> truncated.put("d", "e"));
+    final String[] unchanged = {"foo", "bar"};
+    assertSame(unchanged[1], RSStrings.truncateToUtf8ByteBudget(unchanged, 3, 6)[1]);
+    assertThrows(IllegalArgumentException.class,
+        () -> RSStrings.truncateToUtf8ByteBudget(unchanged, -1, 6));
+    assertThrows(IllegalArgumentException.class,
+        () -> RSStrings.truncateToUtf8ByteBudget(unchanged, 1, -1));
+    assertThrows(NullPointerException.class,
+        () -> RSStrings.truncateToUtf8ByteBudget((String[]) null, 1, 1));
+  }
+
   @Test
   public void testByteSizeTruncatingFullChar() {
     assertEquals("ab", RSStrings.truncateToByteSize("abc", 5, UTF_16BE));
@@ -64,4 +135,71 @@ public class RSStringsTest {
     }
   }
 
+  @Test
+  public void testEqualsIgnoreAsciiCase() {
+    assertTrue(RSStrings.equalsIgnoreAsciiCase(null, null));
+    assertFalse(RSStrings.equalsIgnoreAsciiCase("a", null));
+    assertFalse(RSStrings.equalsIgnoreAsciiCase(null, "a"));
+    assertTrue(RSStrings.equalsIgnoreAsciiCase("", new StringBuilder()));
+    assertTrue(RSStrings.equalsIgnoreAsciiCase("Content-Type", new StringBuilder("content-TYPE")));
+    assertFalse(RSStrings.equalsIgnoreAsciiCase("Content-Type", "Content-Typ"));
+    assertFalse(RSStrings.equalsIgnoreAsciiCase("[", "{"));
+    assertFalse(RSStrings.equalsIgnoreAsciiCase("@", "`"));
+    // Only ASCII letters are case insensitive
+    assertTrue(RSStrings.equalsIgnoreAsciiCase("\u00c9", "\u00c9"));
+    assertFalse(RSStrings.equalsIgnoreAsciiCase("\u00c9", "\u00e9"));
+    assertFalse(RSStrings.equalsIgnoreAsciiCase("k", "\u212a"));
+  }
+
+  @Test
+  public void testRegionMatches() {
+    assertTrue(RSStrings.regionMatches("xHTTPS://", true, 1, "https", 0, 5));
+    assertFalse(RSStrings.regionMatches("xHTTPS://", false, 1, "https", 0, 5));
+    assertTrue(RSStrings.regionMatches(new StringBuilder("ab"), false, 0, "ab", 0, 2));
+    assertTrue(RSStrings.regionMatches("ab", false, 2, "ab", 2, 0));
+    assertFalse(RSStrings.regionMatches("ab", true, 1, "ab", 0, 2));
+    assertFalse(RSStrings.regionMatches("ab", true, -1, "ab", 0, 1));
+    assertFalse(RSStrings.regionMatches("ab", true, 0, "ab", -1, 1));
+    assertFalse(RSStrings.regionMatches("ab", true, 0, "ab", 0, Integer.MAX_VALUE));
+    assertThrows(NullPointerException.class,
+        () -> RSStrings.regionMatches(null, true, 0, "a", 0, 1));
+    for (int i = 0; i < 1000; i++) {
+      final String s = RandomStringUtils.random(8, "aAbB\u00e9\u00c9");
+      final String other = RandomStringUtils.random(8, "aAbB\u00e9\u00c9");
+      assertEquals(s.regionMatches(false, 1, other, 2, 5),
+          RSStrings.regionMatches(s, false, 1, other, 2, 5));
+      // Only the ASCII letters get lower cased
+      assertEquals(
+          s.replace('A', 'a').replace('B', 'b')
+              .regionMatches(1, other.replace('A', 'a').replace('B', 'b'), 2, 5),
+          RSStrings.regionMatches(s, true, 1, other, 2, 5));
+    }
+  }
+
+  @Test
+  public void testToAsciiLowerCase() {
+    final String lower = "gzip, deflate";
+    assertSame(lower, RSStrings.toAsciiLowerCase(lower));
+    assertEquals("gzip, deflate", RSStrings.toAsciiLowerCase("GZip, Deflate"));
+    assertEquals("gzip", RSStrings.toAsciiLowerCase(new StringBuilder("GZip, Deflate"), 0, 4));
+    assertEquals("deflate", RSStrings.toAsciiLowerCase("GZip, Deflate", 6, 13));
+    assertEquals("", RSStrings.toAsciiLowerCase("ABC", 1, 1));
+    assertEquals("\u00c9a", RSStrings.toAsciiLowerCase("\u00c9A"));
+    assertEquals("[@]", RSStrings.toAsciiLowerCase("[@]"));
+    assertThrows(IndexOutOfBoundsException.class, () -> RSStrings.toAsciiLowerCase("abc", 2, 1));
+    assertThrows(IndexOutOfBoundsException.class, () -> RSStrings.toAsciiLowerCase("abc", 0, 4));
+  }
+
+  @Test
+  public void testHashCodeIgnoreAsciiCase() {
+    assertEquals(0, RSStrings.hashCodeIgnoreAsciiCase(""));
+    assertEquals("content-type".hashCode(), RSStrings.hashCodeIgnoreAsciiCase("Content-Type"));
+    assertEquals(RSStrings.hashCodeIgnoreAsciiCase("ACCEPT"),
+        RSStrings.hashCodeIgnoreAsciiCase(new StringBuilder("accept")));
+    for (int i = 0; i < 1000; i++) {
+      final String s = RandomStringUtils.random(i % 20);
+      assertEquals(RSStrings.toAsciiLowerCase(s).hashCode(), RSStrings.hashCodeIgnoreAsciiCase(s));
+    }
+  }
+
 }
@@ -0,0 +1,124 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class RSThrowableAggregatorTest {
+
+  @Test
+  public void testInvalidArgs() {
+    assertThrows(IllegalArgumentException.class,
+        () -> RSThrowableAggregator.create(Duration.ofSeconds(-1), 10, summary -> {}));
+    assertThrows(IllegalArgumentException.class,
+        () -> RSThrowableAggregator.create(Duration.ofSeconds(1), 0, summary -> {}));
+    assertThrows(NullPointerException.class,
+        () -> RSThrowableAggregator.create(null, 10, summary -> {}));
+    assertThrows(NullPointerException.class,
+        () -> RSThrowableAggregator.create(Duration.ofSeconds(1), 10, null));
+  }
+
+  @Test
+  public void testDeduplicate() {
+    final List<RSThrowableAggregator.Summary> summaries = new ArrayList<>();
+    final RSThrowableAggregator aggregator =
+        RSThrowableAggregator.create(Duration.ofDays(1), 10, summaries::add);
+    final List<Exception> exceptions = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      exceptions.add(new IOException("foo" + i));
+    }
+    exceptions.forEach(aggregator::record);
+    final Exception other = new IllegalStateException();
+    aggregator.record(other);
+    // Only the first occurrences are emitted
+    assertEquals(2, summaries.size());
+    assertSame(exceptions.get(0), summaries.get(0).getSample());
+    assertEquals(1, summaries.get(0).getCount());
+    assertEquals(RSThrowables.fingerprint(exceptions.get(0)),
+        summaries.get(0).getFingerprint());
+    assertSame(other, summaries.get(1).getSample());
+    assertEquals(1, summaries.get(1).getCount());
+    assertEquals(2, aggregator.size());
+    // The window is not over
+    aggregator.flush();
+    assertEquals(2, summaries.size());
+    assertEquals(2, aggregator.size());
+  }
+
+  @Test
+  public void testWindows() {
+    final List<RSThrowableAggregator.Summary> summaries = new ArrayList<>();
+    final RSThrowableAggregator aggregator =
+        RSThrowableAggregator.create(Duration.ZERO, 10, summaries::add);
+    final List<Exception> exceptions = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      exceptions.add(new IOException("foo" + i));
+    }
+    exceptions.forEach(aggregator::record);
+    // Every window is over right away
+    assertEquals(3, summaries.size());
+    for (int i = 0; i < 3; i++) {
+      assertSame(exceptions.get(i), summaries.get(i).getSample());
+      assertEquals(1, summaries.get(i).getCount());
+    }
+    assertEquals(1, aggregator.size());
+    // Nothing is pending, so the fingerprint is dropped
+    aggregator.flush();
+    assertEquals(3, summaries.size());
+    assertEquals(0, aggregator.size());
+  }
+
+  @Test
+  public void testMaxSize() {
+    final List<RSThrowableAggregator.Summary> summaries = new ArrayList<>();
+    final RSThrowableAggregator aggregator =
+        RSThrowableAggregator.create(Duration.ofDays(1), 1, summaries::add);
+    for (int i = 0; i < 3; i++) {
+      aggregator.record(new IOException());
+      aggregator.record(new IllegalStateException());
+    }
+    // The IllegalStateExceptions are not deduplicated
+    assertEquals(4, summaries.size());
+    assertEquals(1, aggregator.size());
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    final List<RSThrowableAggregator.Summary> summaries =
+        Collections.synchronizedList(new ArrayList<>());
+    final RSThrowableAggregator aggregator =
+        RSThrowableAggregator.create(Duration.ofMillis(1), 10, summaries::add);
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    final Exception exception = new IOException();
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10000; i++) {
+            aggregator.record(exception);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    Thread.sleep(2);
+    aggregator.flush();
+    // Every occurrence is counted exactly once
+    assertEquals(40000,
+        summaries.stream().mapToLong(RSThrowableAggregator.Summary::getCount).sum());
+  }
+
+}
@@ -0,0 +1,86 @@
+package com.saasquatch.common.base;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for traversing cause chains with {@link RSThrowables}. Not run as part of the
+ * tests. Run with the main method from the test classpath, with {@code -prof gc} for the
+ * allocation rate.
+ *
+ * @author sli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RSThrowablesBenchmark {
+
+  // The number of Throwables in the cause chain
+  @Param({"1", "3", "4", "20"})
+  public int depth;
+
+  private Exception chain;
+  // The same chain where the last Throwable refers back to the first one
+  private Exception cyclicChain;
+
+  @Setup
+  public void setup() {
+    chain = newChain();
+    cyclicChain = newChain();
+    Throwable last = cyclicChain;
+    while (last.getCause() != null) {
+      last = last.getCause();
+    }
+    if (last != cyclicChain) {
+      last.initCause(cyclicChain);
+    }
+  }
+
+  private Exception newChain() {
+    final Exception first = new Exception("0");
+    Exception last = first;
+    for (int i = 1; i < depth; i++) {
+      final Exception cause = new Exception(String.valueOf(i));
+      last.initCause(cause);
+      last = cause;
+    }
+    return first;
+  }
+
+  @Benchmark
+  public int indexOfInCauseChain() {
+    return RSThrowables.indexOfInCauseChain(chain, IOException.class);
+  }
+
+  @Benchmark
+  public int indexOfInCyclicCauseChain() {
+    return RSThrowables.indexOfInCauseChain(cyclicChain, IOException.class);
+  }
+
+  @Benchmark
+  public long fingerprint() {
+    return RSThrowables.fingerprint(chain, 0);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(RSThrowablesBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+}
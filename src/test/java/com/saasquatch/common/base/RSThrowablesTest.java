@@ -2,6 +2,7 @@ package com.saasquatch.common.base;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -10,6 +11,7 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.lang.reflect.UndeclaredThrowableException;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -18,6 +20,7 @@ import java.util.NoSuchElementException;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 import org.junit.jupiter.api.Test;
 import com.google.common.collect.ImmutableList;
@@ -118,12 +121,97 @@ public class RSThrowablesTest {
     assertFalse(RSThrowables.findFirstInCauseChain(e, CompletionException.class).isPresent());
   }
 
+  @Test
+  public void testForEachCause() {
+    final Exception e0 = new Exception("0");
+    final Exception e1 = new IOException("1", e0);
+    final Exception e2 = new Exception("2", e1);
+    final List<Throwable> visited = new ArrayList<>();
+    assertTrue(RSThrowables.forEachCause(e2, visited::add));
+    assertEquals(Arrays.asList(e2, e1, e0), visited);
+    visited.clear();
+    assertFalse(RSThrowables.forEachCause(e2, 0, cause -> {
+      visited.add(cause);
+      return !(cause instanceof IOException);
+    }));
+    assertEquals(Arrays.asList(e2, e1), visited);
+    visited.clear();
+    assertTrue(RSThrowables.forEachCause(e2, 2, visited::add));
+    assertEquals(Arrays.asList(e2, e1), visited);
+    final int[] count = new int[1];
+    assertTrue(RSThrowables.forEachCause(new FakeCauseRuntimeException(), 50, cause -> {
+      count[0]++;
+      return true;
+    }));
+    assertEquals(50, count[0]);
+    assertThrows(IllegalArgumentException.class,
+        () -> RSThrowables.forEachCause(e2, -1, cause -> true));
+    assertThrows(NullPointerException.class, () -> RSThrowables.forEachCause(e2, null));
+    assertThrows(NullPointerException.class, () -> RSThrowables.forEachCause(null, cause -> true));
+  }
+
+  @Test
+  public void testIndexOfInCauseChain() {
+    final Exception e = new Exception(new IOException("0", new Exception(new IOException("1"))));
+    assertEquals(0, RSThrowables.indexOfInCauseChain(e, Exception.class));
+    assertEquals(1, RSThrowables.indexOfInCauseChain(e, IOException.class));
+    assertEquals(-1, RSThrowables.indexOfInCauseChain(e, CompletionException.class));
+    assertEquals(-1,
+        RSThrowables.indexOfInCauseChain(new FakeCauseRuntimeException(), IOException.class));
+    assertThrows(NullPointerException.class,
+        () -> RSThrowables.indexOfInCauseChain(null, Exception.class));
+    assertThrows(NullPointerException.class, () -> RSThrowables.indexOfInCauseChain(e, null));
+  }
+
   @Test
   public void testSelfCause() {
     final SelfCauseRuntimeException fakeException = new SelfCauseRuntimeException();
     assertEquals(Arrays.asList(fakeException), RSThrowables.getCauseChainList(fakeException, 0));
   }
 
+  @Test
+  public void testCyclicCauseChain() {
+    final Exception a = new Exception("a");
+    final Exception b = new Exception("b", a);
+    a.initCause(b);
+    assertEquals(Arrays.asList(a, b), RSThrowables.getCauseChainList(a, 0));
+    assertEquals(Arrays.asList(b, a), RSThrowables.getCauseChainList(b));
+    assertFalse(RSThrowables.findFirstInCauseChain(a, IOException.class).isPresent());
+    assertEquals(-1, RSThrowables.indexOfInCauseChain(a, IOException.class));
+    final int[] count = new int[1];
+    assertTrue(RSThrowables.forEachCause(a, 0, cause -> {
+      count[0]++;
+      return true;
+    }));
+    assertEquals(2, count[0]);
+    // Long cycles, and cycles that do not go back to the start of the chain
+    for (int len : new int[] {3, 7, 8, 9, 10, 15, 16, 17, 50, 127, 300}) {
+      final List<Exception> chain = new ArrayList<>();
+      final Exception last = new Exception("last");
+      Exception curr = last;
+      chain.add(curr);
+      for (int i = 1; i < len; i++) {
+        curr = new Exception(String.valueOf(i), curr);
+        chain.add(0, curr);
+      }
+      last.initCause(chain.get(1));
+      final Exception head = new IOException(chain.get(0));
+      chain.add(0, head);
+      assertEquals(chain, RSThrowables.getCauseChainList(head, 0));
+      assertEquals(chain.size(),
+          RSThrowables.getCauseChainStream(head, 0).limit(1000).count());
+      assertEquals(chain.subList(0, Math.min(chain.size(), 100)),
+          RSThrowables.getCauseChainList(head));
+      assertEquals(chain.subList(0, Math.min(chain.size(), 16)),
+          RSThrowables.getCauseChainList(head, 16));
+      final List<Throwable> visited = new ArrayList<>();
+      assertTrue(RSThrowables.forEachCause(head, 0, visited::add));
+      assertEquals(chain, visited);
+      assertEquals(-1, RSThrowables.indexOfInCauseChain(chain.get(1), IOException.class));
+      assertEquals(0, RSThrowables.indexOfInCauseChain(head, IOException.class));
+    }
+  }
+
   @Test
   public void testCauseEquals() {
     final FakeCauseAlwaysEqualsRuntimeException fakeException =
@@ -162,6 +250,96 @@ public class RSThrowablesTest {
     }
   }
 
+  @Test
+  public void testUnwrapAndThrowMultipleTypes() {
+    final ParseException parseException = new ParseException("parse", 0);
+    final IOException ioException = new IOException("io", parseException);
+    final RuntimeException e = new RuntimeException(new CompletionException(ioException));
+    // The types are checked in order regardless of their positions in the cause chain
+    try {
+      RSThrowables.unwrapAndThrow(e, ParseException.class, IOException.class);
+      fail();
+    } catch (ParseException | IOException expected) {
+      assertSame(parseException, expected);
+    }
+    try {
+      RSThrowables.unwrapAndThrow(e, ExecutionException.class, IOException.class,
+          ParseException.class);
+      fail();
+    } catch (ExecutionException | IOException | ParseException expected) {
+      assertSame(ioException, expected);
+    }
+    try {
+      RSThrowables.unwrapAndThrow(e, TimeoutException.class, ExecutionException.class,
+          InterruptedException.class, CompletionException.class, IOException.class,
+          ParseException.class);
+      fail();
+    } catch (TimeoutException | ExecutionException | InterruptedException | IOException
+        | ParseException expected) {
+      fail(expected);
+    } catch (CompletionException expected) {
+      assertSame(e.getCause(), expected);
+    }
+    // Superclasses match as well
+    try {
+      RSThrowables.unwrapAndThrow(e, ExecutionException.class, Exception.class);
+      fail();
+    } catch (ExecutionException unexpected) {
+      fail(unexpected);
+    } catch (Exception expected) {
+      assertSame(e, expected);
+    }
+    try {
+      RSThrowables.unwrapAndThrow(e, TimeoutException.class, ExecutionException.class,
+          UncheckedIOException.class, Error.class);
+      // The line above shouldn't do anything
+    } catch (TimeoutException | ExecutionException unexpected) {
+      fail(unexpected);
+    }
+    assertThrows(NullPointerException.class,
+        () -> RSThrowables.unwrapAndThrow(e, IOException.class, null));
+    assertThrows(NullPointerException.class,
+        () -> RSThrowables.unwrapAndThrow(null, IOException.class, ParseException.class));
+  }
+
+  @Test
+  public void testFingerprint() {
+    final List<Exception> exceptions = new ArrayList<>();
+    for (int i = 0; i < 2; i++) {
+      // Same stack trace with different messages
+      exceptions.add(new IllegalStateException("foo" + i, new IOException("bar" + i)));
+    }
+    final long fingerprint = RSThrowables.fingerprint(exceptions.get(0));
+    assertEquals(fingerprint, RSThrowables.fingerprint(exceptions.get(1)));
+    assertEquals(fingerprint, RSThrowables.fingerprint(exceptions.get(0), 8));
+    // Different cause
+    assertNotEquals(fingerprint, RSThrowables.fingerprint(new IllegalStateException("foo0",
+        new UncheckedIOException(new IOException("bar0")))));
+    // Different line
+    final Exception otherLine = new IllegalStateException("foo0", new IOException("bar0"));
+    assertNotEquals(fingerprint, RSThrowables.fingerprint(otherLine));
+    assertEquals(RSThrowables.fingerprint(exceptions.get(0), 0),
+        RSThrowables.fingerprint(otherLine, 0));
+    // Stack traces that only differ below the top frames
+    final Exception e1 = new Exception();
+    final Exception e2 = new Exception();
+    e2.setStackTrace(e1.getStackTrace().clone());
+    final StackTraceElement[] stackTrace = e2.getStackTrace();
+    stackTrace[stackTrace.length - 1] = new StackTraceElement("Foo", "bar", "Foo.java", 1);
+    e2.setStackTrace(stackTrace);
+    assertNotEquals(RSThrowables.fingerprint(e1, 0), RSThrowables.fingerprint(new Error(), 0));
+    assertEquals(RSThrowables.fingerprint(e1, 1), RSThrowables.fingerprint(e2, 1));
+    assertNotEquals(RSThrowables.fingerprint(e1, stackTrace.length),
+        RSThrowables.fingerprint(e2, stackTrace.length));
+    // Cycles
+    final Exception a = new Exception();
+    final Exception b = new Exception(a);
+    a.initCause(b);
+    assertEquals(RSThrowables.fingerprint(a), RSThrowables.fingerprint(a));
+    assertThrows(IllegalArgumentException.class, () -> RSThrowables.fingerprint(a, -1));
+    assertThrows(NullPointerException.class, () -> RSThrowables.fingerprint(null));
+  }
+
   @Test
   public void testWrapAndThrow() {
     final RuntimeException runtimeException = new UncheckedIOException(new IOException("foo"));
@@ -0,0 +1,59 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.Test;
+
+public class RSUrlBuilderTest {
+
+  @Test
+  public void testNull() {
+    assertThrows(NullPointerException.class, () -> RSUrlBuilder.create(null));
+    assertThrows(NullPointerException.class, () -> RSUrlBuilder.create().append(null));
+    assertThrows(NullPointerException.class, () -> RSUrlBuilder.create().pathSegment(null));
+    assertThrows(NullPointerException.class, () -> RSUrlBuilder.create().queryParam(null, ""));
+    assertThrows(IllegalArgumentException.class,
+        () -> RSUrlBuilder.create(RSUrlCodec.getEncoder(), -1));
+  }
+
+  @Test
+  public void testBasic() {
+    assertEquals("https://example.com/a%20b/c%2Fd?q=c%26d&e=f%20g&flag",
+        RSUrlBuilder.create().append("https://example.com").pathSegments("a b", "c/d")
+            .queryParam("q", "c&d").queryParam("e", "f g").queryParam("flag", null).build());
+    assertEquals("https://example.com/a%20b?q=f+g",
+        RSUrlBuilder.create(RSUrlCodec.getFormEncoder()).append("https://example.com/")
+            .pathSegment("a b").queryParam("q", "f g").toString());
+    assertEquals("/a", RSUrlBuilder.create().pathSegment("a").build());
+  }
+
+  @Test
+  public void testExistingQuery() {
+    assertEquals("https://example.com/?a=b&c=d",
+        RSUrlBuilder.create().append("https://example.com/?a=b").queryParam("c", "d").build());
+    assertThrows(IllegalStateException.class,
+        () -> RSUrlBuilder.create().append("/?a=b").pathSegment("c"));
+    assertThrows(IllegalStateException.class,
+        () -> RSUrlBuilder.create().queryParam("a", "b").pathSegment("c"));
+  }
+
+  @Test
+  public void testReset() {
+    final RSUrlBuilder builder = RSUrlBuilder.create(RSUrlCodec.getEncoder(), 0);
+    for (int i = 0; i < 128; i++) {
+      final String segment = RandomStringUtils.random(16);
+      final String name = RandomStringUtils.random(8);
+      final String value = RandomStringUtils.random(32);
+      assertSame(builder, builder.reset());
+      assertEquals(0, builder.length());
+      final String url = builder.append("https://example.com").pathSegment(segment)
+          .queryParam(name, value).build();
+      assertEquals("https://example.com/" + RSUrlCodec.encode(segment) + '?'
+          + RSUrlCodec.encode(name) + '=' + RSUrlCodec.encode(value), url);
+      assertEquals(url.length(), builder.length());
+    }
+  }
+
+}
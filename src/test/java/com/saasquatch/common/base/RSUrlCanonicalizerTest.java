@@ -0,0 +1,97 @@
+package com.saasquatch.common.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.ThreadLocalRandom;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.junit.jupiter.api.Test;
+
+public class RSUrlCanonicalizerTest {
+
+  @Test
+  public void testNull() {
+    assertThrows(NullPointerException.class, () -> RSUrlCanonicalizer.canonicalize(null));
+  }
+
+  @Test
+  public void testBasic() {
+    assertEquals("http://User@example.com:8080/a/c/d%3A?Q=~%3A#F~",
+        RSUrlCanonicalizer.canonicalize(
+            "HTTP://User@Example.COM:8080/a/./b/../c/%7euser/%2e%2E/d%3a?Q=%7E%3a#F%7e"));
+    assertEquals("http://a.com/", RSUrlCanonicalizer.canonicalize("http://%41.COM/"));
+    assertEquals("http://[::ff]:80", RSUrlCanonicalizer.canonicalize("http://[::FF]:80"));
+    assertEquals("/a%2Fb", RSUrlCanonicalizer.canonicalize("/a%2fb"));
+    assertEquals("", RSUrlCanonicalizer.canonicalize(""));
+    // Invalid % patterns are left alone
+    assertEquals("%zz%4%", RSUrlCanonicalizer.canonicalize("%zz%4%"));
+    assertEquals("%.", RSUrlCanonicalizer.canonicalize("%%2E"));
+    // Decoding would form a new % pattern
+    assertEquals("%%41", RSUrlCanonicalizer.canonicalize("%%41"));
+    assertEquals("%%61a", RSUrlCanonicalizer.canonicalize("%%61a"));
+    assertEquals("%a%311", RSUrlCanonicalizer.canonicalize("%a%311"));
+  }
+
+  @Test
+  public void testDotSegments() {
+    // Examples from RFC 3986 section 5.4
+    assertEquals("http://a/g", RSUrlCanonicalizer.canonicalize("http://a/b/c/./../../g"));
+    assertEquals("http://a/b/c/g", RSUrlCanonicalizer.canonicalize("http://a/b/c/./g"));
+    assertEquals("http://a/b/", RSUrlCanonicalizer.canonicalize("http://a/b/c/.."));
+    assertEquals("http://a/g", RSUrlCanonicalizer.canonicalize("http://a/../../g"));
+    assertEquals("http://a/b/c/g?y/./x",
+        RSUrlCanonicalizer.canonicalize("http://a/b/c/g?y/./x"));
+    assertEquals("http://a/b/c/g#s/../x",
+        RSUrlCanonicalizer.canonicalize("http://a/b/c/g#s/../x"));
+    assertEquals("/", RSUrlCanonicalizer.canonicalize("/a/.."));
+    assertEquals("/a/", RSUrlCanonicalizer.canonicalize("/a/."));
+    assertEquals("/a//c", RSUrlCanonicalizer.canonicalize("/a//b/../c"));
+    assertEquals("/a/..b/.c", RSUrlCanonicalizer.canonicalize("/a/..b/.c"));
+    // Relative paths are left alone
+    assertEquals("../a/./b", RSUrlCanonicalizer.canonicalize("../a/./b"));
+    assertEquals("mailto:A@B.COM", RSUrlCanonicalizer.canonicalize("mailto:A@B.COM"));
+  }
+
+  @Test
+  public void testPathDoesNotBecomeAuthority() {
+    assertEquals("http:/.//evil.com/x", RSUrlCanonicalizer.canonicalize("http:/.//evil.com/x"));
+    assertEquals("http:/.//evil.com/x", RSUrlCanonicalizer.canonicalize("http:/..//evil.com/x"));
+    assertEquals("/.//evil.com", RSUrlCanonicalizer.canonicalize("/a/..//evil.com"));
+    assertEquals("/.//%S%", RSUrlCanonicalizer.canonicalize("/.//%%53%"));
+    // The path can start with "//" if there is an authority
+    assertEquals("http://a//evil.com", RSUrlCanonicalizer.canonicalize("http://a/b/..//evil.com"));
+  }
+
+  @Test
+  public void testRelativeReferenceWithColon() {
+    // Decoding would create a scheme
+    assertEquals("E%2EA:E1", RSUrlCanonicalizer.canonicalize("E%2eA:E1"));
+    assertEquals("E%2EA:E1/~", RSUrlCanonicalizer.canonicalize("E%2eA:E1/%7e"));
+    assertEquals("a.b/c:.", RSUrlCanonicalizer.canonicalize("a%2eb/c:%2E"));
+    assertEquals("e.a:E1", RSUrlCanonicalizer.canonicalize("E.A:E1"));
+  }
+
+  @Test
+  public void testNoCopy() {
+    for (String url : new String[] {"", "http://example.com", "https://a.b/c/d?e=%3A&f#g",
+        "/a/b/", "a/../b", "mailto:A@B.COM"}) {
+      assertSame(url, RSUrlCanonicalizer.canonicalize(url));
+    }
+  }
+
+  @Test
+  public void testIdempotent() {
+    for (int i = 0; i < 1000; i++) {
+      final String url = "HTTP://Example.COM/" + RandomStringUtils.random(20, "aB./%2eE7f614?#");
+      final String canonical = RSUrlCanonicalizer.canonicalize(url);
+      assertSame(canonical, RSUrlCanonicalizer.canonicalize(canonical));
+    }
+    for (int i = 0; i < 100000; i++) {
+      final String url = RandomStringUtils.random(ThreadLocalRandom.current().nextInt(16),
+          "aE/.%2e53:?#@");
+      final String canonical = RSUrlCanonicalizer.canonicalize(url);
+      assertEquals(canonical, RSUrlCanonicalizer.canonicalize(canonical), url);
+    }
+  }
+
+}
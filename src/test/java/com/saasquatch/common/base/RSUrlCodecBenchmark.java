@@ -0,0 +1,105 @@
+package com.saasquatch.common.base;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks for {@link RSUrlCodec} with long inputs. Not run as part of the tests. Run with
+ * the main method from the test classpath.
+ *
+ * @author sli
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RSUrlCodecBenchmark {
+
+  private static final RSUrlCodec.Decoder FORM_DECODER =
+      RSUrlCodec.getDecoder().decodePlusToSpace(true);
+
+  @Param({"1024", "65536"})
+  public int size;
+
+  // Mostly safe chars with the occasional char that needs to be encoded, like encoded JSON
+  private String mostlySafe;
+  private String mostlySafeEncoded;
+  private StringBuilder mostlySafeEncodedBuilder;
+  private byte[] mostlySafeEncodedBytes;
+  // Only safe chars
+  private String safe;
+
+  @Setup
+  public void setup() {
+    final StringBuilder sb = new StringBuilder(size);
+    while (sb.length() < size) {
+      sb.append(RandomStringUtils.randomAlphanumeric(31)).append(' ');
+    }
+    sb.setLength(size);
+    mostlySafe = sb.toString();
+    mostlySafeEncoded = RSUrlCodec.getFormEncoder().encode(mostlySafe);
+    mostlySafeEncodedBuilder = new StringBuilder(mostlySafeEncoded);
+    mostlySafeEncodedBytes = mostlySafeEncoded.getBytes(US_ASCII);
+    safe = RandomStringUtils.randomAlphanumeric(size);
+  }
+
+  @Benchmark
+  public String encode() {
+    return RSUrlCodec.getFormEncoder().encode(mostlySafe);
+  }
+
+  @Benchmark
+  public String decode() {
+    return FORM_DECODER.decode(mostlySafeEncoded);
+  }
+
+  /**
+   * Baseline for {@link #decode()}. Non-String inputs are scanned one char at a time instead of
+   * with String.indexOf.
+   */
+  @Benchmark
+  public String decodePerChar() {
+    return FORM_DECODER.decode(mostlySafeEncodedBuilder);
+  }
+
+  @Benchmark
+  public int scanSafeChars() {
+    return RSUrlCodec.AsciiCharSet.WWW_FORM_URLENCODED.indexOfFirstNonMember(safe, 0, size);
+  }
+
+  /**
+   * Baseline for {@link #scanSafeChars()}
+   */
+  @Benchmark
+  public int scanSafeCharsPerChar() {
+    return RSUrlCodec.AsciiCharSet.WWW_FORM_URLENCODED.indexOfFirstNonMemberPerChar(safe, 0,
+        size);
+  }
+
+  @Benchmark
+  public byte[] decodeBytes() {
+    return RSUrlCodec.getDecoder().decodeBytes(mostlySafeEncodedBytes);
+  }
+
+  public static void main(String[] args) throws Exception {
+    new Runner(new OptionsBuilder().include(RSUrlCodecBenchmark.class.getSimpleName()).build())
+        .run();
+  }
+
+}
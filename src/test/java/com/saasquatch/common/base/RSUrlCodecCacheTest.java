@@ -0,0 +1,142 @@
+package com.saasquatch.common.base;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+public class RSUrlCodecCacheTest {
+
+  @Test
+  public void testInvalidArgs() {
+    assertThrows(IllegalArgumentException.class, () -> RSUrlCodecCache.create(0));
+    assertThrows(IllegalArgumentException.class, () -> RSUrlCodecCache.create(1, -1));
+    final RSUrlCodecCache cache = RSUrlCodecCache.create(10);
+    assertThrows(NullPointerException.class, () -> cache.encode(null, "a"));
+    assertThrows(NullPointerException.class, () -> cache.encode(RSUrlCodec.getEncoder(), null));
+    assertThrows(NullPointerException.class, () -> cache.decode(null, "a"));
+    assertThrows(NullPointerException.class, () -> cache.decode(RSUrlCodec.getDecoder(), null));
+  }
+
+  @Test
+  public void testHitsAndMisses() {
+    final RSUrlCodecCache cache = RSUrlCodecCache.create(100);
+    final String encoded = cache.encode(RSUrlCodec.getEncoder(), "a b");
+    assertEquals("a%20b", encoded);
+    assertEquals(0, cache.hitCount());
+    assertEquals(1, cache.missCount());
+    assertSame(encoded, cache.encode(RSUrlCodec.getEncoder(), "a b"));
+    // Equal config means equal keys
+    assertSame(encoded,
+        cache.encode(RSUrlCodec.getFormEncoder().encodeSpaceToPlus(false)
+            .withSafeChars("abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.~"),
+            new StringBuilder("a b")));
+    assertEquals(2, cache.hitCount());
+    assertEquals("a+b", cache.encode(RSUrlCodec.getFormEncoder(), "a b"));
+    assertEquals("a b", cache.decode(RSUrlCodec.getDecoder(), "a+b"));
+    assertEquals("a+b", cache.decode(RSUrlCodec.getDecoder().decodePlusToSpace(false), "a+b"));
+    assertEquals(2, cache.hitCount());
+    assertEquals(4, cache.missCount());
+    assertEquals(4, cache.size());
+    cache.clear();
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.hitCount());
+  }
+
+  @Test
+  public void testNotCached() {
+    final RSUrlCodecCache cache = RSUrlCodecCache.create(100, 3);
+    assertEquals("abcd", cache.encode(RSUrlCodec.getEncoder(), "abcd"));
+    assertEquals(0, cache.missCount());
+    assertThrows(IllegalArgumentException.class, () -> cache.decode(RSUrlCodec.getDecoder(), "%"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testEviction() {
+    final RSUrlCodecCache cache = RSUrlCodecCache.create(50);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i + "%20", cache.encode(RSUrlCodec.getEncoder(), i + " "));
+      assertTrue(cache.size() <= 50);
+    }
+    assertEquals(1000, cache.missCount());
+  }
+
+  @Test
+  public void testHotEntriesSurvive() {
+    final RSUrlCodecCache cache = RSUrlCodecCache.create(8);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals("hot%20token", cache.encode(RSUrlCodec.getEncoder(), "hot token"));
+      assertEquals(i + "%20", cache.encode(RSUrlCodec.getEncoder(), i + " "));
+      assertTrue(cache.size() <= 8);
+    }
+    // Only the first call with the hot token is a miss
+    assertEquals(999, cache.hitCount());
+    assertEquals(1001, cache.missCount());
+  }
+
+  @Test
+  public void testConcurrentHits() throws Exception {
+    final RSUrlCodecCache cache = RSUrlCodecCache.create(16);
+    final String[] tokens = {"a b", "c/d", "e?f", "g&h"};
+    final String[] cached = new String[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      cached[i] = cache.encode(RSUrlCodec.getEncoder(), tokens[i]);
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            final int idx = i % tokens.length;
+            assertSame(cached[idx], cache.encode(RSUrlCodec.getEncoder(), tokens[idx]));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(80_000, cache.hitCount());
+    assertEquals(tokens.length, cache.missCount());
+    assertEquals(tokens.length, cache.size());
+  }
+
+  @Test
+  public void testConcurrent() throws Exception {
+    final RSUrlCodecCache cache = RSUrlCodecCache.create(64);
+    final RSUrlCodec.Decoder decoder = RSUrlCodec.getDecoder().withCharset(ISO_8859_1);
+    final ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      final List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 8; t++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 10_000; i++) {
+            final String s = "%E9" + (i % 100);
+            assertEquals(decoder.decode(s), cache.decode(decoder, s));
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(80_000, cache.hitCount() + cache.missCount());
+    assertNotEquals(0, cache.hitCount());
+    assertTrue(cache.size() <= 64);
+  }
+
+}
@@ -5,19 +5,40 @@ import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_16BE;
 import static java.nio.charset.StandardCharsets.UTF_16LE;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntPredicate;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.Test;
@@ -235,6 +256,36 @@ public class RSUrlCodecTest {
     }
   }
 
+  @Test
+  public void testSafeChars() {
+    final String unreserved =
+        "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.~";
+    assertSame(RSUrlCodec.getEncoder(), RSUrlCodec.getEncoder().withSafeChars(unreserved));
+    assertSame(RSUrlCodec.getEncoder(), RSUrlCodec.getEncoder().withAdditionalSafeChars("~-"));
+    final RSUrlCodec.Encoder tableEncoder = RSUrlCodec.getEncoder().withAdditionalSafeChars("/:");
+    assertSame(tableEncoder, tableEncoder.withSafeChars(unreserved + ":/"));
+    final RSUrlCodec.Encoder predicateEncoder = RSUrlCodec.getEncoder()
+        .withSafeCharPredicate(c -> unreserved.indexOf(c) >= 0 || c == '/' || c == ':');
+    assertEquals("https://example.com/a%20b", tableEncoder.encode("https://example.com/a b"));
+    for (int i = 0; i < 128; i++) {
+      final String original = RandomStringUtils.random(1024);
+      final String randomAscii = RandomStringUtils.randomAscii(0, 32);
+      assertEquals(predicateEncoder.encode(original), tableEncoder.encode(original));
+      assertEquals(
+          RSUrlCodec.getFormEncoder().withSafeCharPredicate(c -> randomAscii.indexOf(c) >= 0)
+              .encode(original),
+          RSUrlCodec.getFormEncoder().withSafeChars(randomAscii).encode(original));
+      assertEquals(original, RSUrlCodec.decode(tableEncoder.encode(original)));
+    }
+    assertThrows(IllegalArgumentException.class,
+        () -> RSUrlCodec.getEncoder().withSafeChars("abc\u0080"));
+    assertThrows(IllegalArgumentException.class,
+        () -> RSUrlCodec.getEncoder().withAdditionalSafeChars("\u00e9"));
+    assertThrows(IllegalStateException.class, () -> RSUrlCodec.getEncoder()
+        .withSafeCharPredicate(c -> false).withAdditionalSafeChars("/"));
+    assertThrows(NullPointerException.class, () -> RSUrlCodec.getEncoder().withSafeChars(null));
+  }
+
   @Test
   public void testEncodingSpace() {
     assertEquals(" ", RSUrlCodec.getEncoder().withSafeCharPredicate(anything -> true)
@@ -320,6 +371,98 @@ public class RSUrlCodecTest {
     }
   }
 
+  @Test
+  public void testEncodeTo() {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 128; i++) {
+      final String original = RandomStringUtils.random(1024);
+      sb.setLength(0);
+      assertSame(sb, RSUrlCodec.getEncoder().encodeTo(original, sb));
+      assertEquals(RSUrlCodec.encode(original), sb.toString());
+      sb.append('&');
+      RSUrlCodec.getFormEncoder().withCharset(UTF_16LE).encodeTo(original, sb);
+      assertEquals(RSUrlCodec.encode(original) + '&'
+          + RSUrlCodec.getFormEncoder().withCharset(UTF_16LE).encode(original), sb.toString());
+    }
+    assertThrows(NullPointerException.class, () -> RSUrlCodec.getEncoder().encodeTo(null, sb));
+    assertThrows(NullPointerException.class,
+        () -> RSUrlCodec.getEncoder().encodeTo("", (StringBuilder) null));
+  }
+
+  @Test
+  public void testEncodeToCharBuffer() {
+    final CharBuffer buf = CharBuffer.allocate(64);
+    assertSame(buf, RSUrlCodec.getEncoder().encodeTo("a b", buf));
+    RSUrlCodec.getFormEncoder().encodeTo("/c d", buf);
+    buf.flip();
+    assertEquals("a%20b%2Fc+d", buf.toString());
+    assertThrows(BufferOverflowException.class,
+        () -> RSUrlCodec.getEncoder().encodeTo("\u00e9", CharBuffer.allocate(5)));
+    assertThrows(NullPointerException.class,
+        () -> RSUrlCodec.getEncoder().encodeTo("", (CharBuffer) null));
+  }
+
+  @Test
+  public void testEncodeMalformedAndUnmappable() {
+    final String[] inputs = {"\ud83d\ude02", "\ud83d", "\ude02", "\ud83dx", "x\ude02\ud83d",
+        "\u0100", "\u00ff", "\u07ff\u0800\uffff", "a\ud83d\ud83d\ude02b"};
+    final IntPredicate unreserved = c -> (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == '.' || c == '~';
+    for (Charset charset : new Charset[] {UTF_8, US_ASCII, ISO_8859_1}) {
+      final RSUrlCodec.Encoder encoder = RSUrlCodec.getEncoder().withCharset(charset);
+      // A custom predicate forces the Charset based implementation
+      final RSUrlCodec.Encoder referenceEncoder = encoder.withSafeCharPredicate(unreserved);
+      for (String input : inputs) {
+        assertEquals(referenceEncoder.encode(input), encoder.encode(input));
+      }
+      for (int i = 0; i < 128; i++) {
+        final String original = RandomStringUtils.random(256);
+        assertEquals(referenceEncoder.encode(original), encoder.encode(original));
+      }
+    }
+  }
+
+  @Test
+  public void testNoCopy() {
+    final String safe = "abc-123_XYZ.~";
+    assertSame(safe, RSUrlCodec.encode(safe));
+    assertSame(safe, RSUrlCodec.decode(safe));
+    assertSame(safe, RSUrlCodec.getLenientDecoder().decode(safe));
+    assertSame("", RSUrlCodec.encode(""));
+    assertSame("", RSUrlCodec.decode(""));
+    final String plus = "a+b";
+    assertSame(plus, RSUrlCodec.getDecoder().decodePlusToSpace(false).decode(plus));
+    assertEquals("a b", RSUrlCodec.decode(plus));
+    assertEquals(safe, RSUrlCodec.encode(CharBuffer.wrap(safe)));
+    assertEquals(safe, RSUrlCodec.decode(new StringBuilder(safe)));
+    // Only the tail needs to be encoded or decoded
+    assertEquals("abc%20d", RSUrlCodec.encode("abc d"));
+    assertEquals("abc d", RSUrlCodec.decode("abc%20d"));
+    assertEquals("abc+d", RSUrlCodec.getFormEncoder().encode("abc d"));
+  }
+
+  @Test
+  public void testNoCopyAllocation() {
+    final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean sunThreadMXBean =
+        (com.sun.management.ThreadMXBean) threadMXBean;
+    assumeTrue(sunThreadMXBean.isThreadAllocatedMemorySupported()
+        && sunThreadMXBean.isThreadAllocatedMemoryEnabled());
+    final String safe = RandomStringUtils.randomAlphanumeric(256);
+    final int iterations = 100_000;
+    final long threadId = Thread.currentThread().getId();
+    final long before = sunThreadMXBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < iterations; i++) {
+      if (RSUrlCodec.encode(safe) != safe || RSUrlCodec.decode(safe) != safe) {
+        fail();
+      }
+    }
+    final long allocated = sunThreadMXBean.getThreadAllocatedBytes(threadId) - before;
+    // A single copy of the input would be more than 256 bytes per call
+    assertTrue(allocated < iterations, "Allocated " + allocated + " bytes");
+  }
+
   @Test
   public void testDecodeNonAscii() throws Exception {
     {
@@ -356,6 +499,241 @@ public class RSUrlCodecTest {
     }
   }
 
+  @Test
+  public void testDecodeRandomBytes() {
+    final StringBuilder encoded = new StringBuilder();
+    for (Charset charset : new Charset[] {UTF_8, ISO_8859_1, UTF_16BE}) {
+      final RSUrlCodec.Decoder decoder = RSUrlCodec.getDecoder().withCharset(charset);
+      for (int i = 0; i < 1024; i++) {
+        final byte[] bytes = new byte[ThreadLocalRandom.current().nextInt(1, 16)];
+        ThreadLocalRandom.current().nextBytes(bytes);
+        encoded.setLength(0);
+        for (byte b : bytes) {
+          encoded.append('%').append(String.format("%02X", b & 0xFF));
+        }
+        final String expected = charset.decode(ByteBuffer.wrap(bytes)).toString();
+        assertEquals(expected, decoder.decode(encoded));
+        assertEquals(expected, decoder.lenient().decode(encoded));
+        assertEquals("a" + expected + "b" + expected,
+            decoder.decode("a" + encoded + "b" + encoded));
+      }
+    }
+  }
+
+  @Test
+  public void testDecodeMalformedUtf8() {
+    // Overlong, surrogate, out of range, truncated and stray continuation bytes
+    final String[] inputs = {"%C0%AF", "%E0%80%AF", "%ED%A0%80", "%F4%90%80%80", "%F8%88%80%80%80",
+        "%E2%82", "%80", "%C3%A9%80%C3%A9", "%F0%9F%98%82", "%EF%BF%BD"};
+    for (String input : inputs) {
+      final ByteBuffer bytes = ByteBuffer.allocate(input.length() / 3);
+      for (int i = 0; i < input.length(); i += 3) {
+        bytes.put((byte) Integer.parseInt(input.substring(i + 1, i + 3), 16));
+      }
+      bytes.flip();
+      assertEquals(UTF_8.decode(bytes).toString(), RSUrlCodec.decode(input));
+      assertEquals(RSUrlCodec.decode(input), RSUrlCodec.getLenientDecoder().decode(input));
+    }
+    // Runs are decoded separately
+    assertEquals("\ufffdx\ufffd", RSUrlCodec.decode("%E2%82x%AC"));
+  }
+
+  @Test
+  public void testBytes() {
+    for (int i = 0; i < 128; i++) {
+      final String original = RandomStringUtils.random(1024);
+      final byte[] originalBytes = original.getBytes(UTF_8);
+      final byte[] encodedBytes = RSUrlCodec.getFormEncoder().encodeBytes(originalBytes);
+      assertEquals(RSUrlCodec.getFormEncoder().encode(original),
+          new String(encodedBytes, US_ASCII));
+      assertArrayEquals(originalBytes, RSUrlCodec.getDecoder().decodeBytes(encodedBytes));
+      final ByteBuffer buf = ByteBuffer.wrap(encodedBytes);
+      assertEquals(ByteBuffer.wrap(originalBytes), RSUrlCodec.getDecoder().decodeBytes(buf));
+      assertFalse(buf.hasRemaining());
+    }
+    assertArrayEquals(new byte[0], RSUrlCodec.getEncoder().encodeBytes(new byte[0]));
+    assertArrayEquals(new byte[0], RSUrlCodec.getDecoder().decodeBytes(new byte[0]));
+    assertThrows(NullPointerException.class,
+        () -> RSUrlCodec.getEncoder().encodeBytes((byte[]) null));
+    assertThrows(NullPointerException.class,
+        () -> RSUrlCodec.getDecoder().decodeBytes((byte[]) null));
+  }
+
+  @Test
+  public void testDecodeBytesInvalid() {
+    final String[] inputs =
+        {"%%44", "%4%44", "%4.%44", "%44%4", "%44%", "%", "%+4", "a+b", "%zz%", "%4"};
+    final RSUrlCodec.Decoder lenientDecoder =
+        RSUrlCodec.getLenientDecoder().withCharset(ISO_8859_1);
+    for (String input : inputs) {
+      final byte[] inputBytes = input.getBytes(US_ASCII);
+      assertEquals(lenientDecoder.decode(input),
+          new String(lenientDecoder.decodeBytes(inputBytes), ISO_8859_1));
+      if (input.indexOf('%') >= 0) {
+        assertThrows(IllegalArgumentException.class,
+            () -> RSUrlCodec.getDecoder().decodeBytes(inputBytes));
+      }
+    }
+  }
+
+  @Test
+  public void testWordBoundaries() {
+    // Put the chars that need decoding at every position around the 8 byte words
+    for (String special : new String[] {"%41", "+", "%E2%9C%93", "%", "%4"}) {
+      for (int len = 0; len < 40; len++) {
+        for (int pos = 0; pos <= len; pos++) {
+          final String safe = RandomStringUtils.randomAlphanumeric(len);
+          final String encoded = safe.substring(0, pos) + special + safe.substring(pos);
+          for (RSUrlCodec.Decoder decoder : new RSUrlCodec.Decoder[] {
+              RSUrlCodec.getLenientDecoder(),
+              RSUrlCodec.getLenientDecoder().decodePlusToSpace(false)}) {
+            assertEquals(decoder.decode(encoded),
+                new String(decoder.decodeBytes(encoded.getBytes(UTF_8)), UTF_8));
+            // Strings are scanned with String.indexOf, and other CharSequences are not
+            assertEquals(decoder.decode(encoded), decoder.decode(new StringBuilder(encoded)));
+          }
+          assertEquals(encoded, RSUrlCodec.getEncoder().withAdditionalSafeChars("%+")
+              .encode(encoded));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSafeCharBlockScan() {
+    final RSUrlCodec.AsciiCharSet safeChars = RSUrlCodec.AsciiCharSet.RFC3986_UNRESERVED;
+    // Include the chars around the 64 char boundary of the bitmaps and the non-ASCII ones
+    final String chars = "aZ09-~?@_`\u007f\u0080\u00c1\u0141\u4e2d";
+    for (int i = 0; i < 10000; i++) {
+      final String s = RandomStringUtils.random(ThreadLocalRandom.current().nextInt(20),
+          chars.substring(0, 4)) + RandomStringUtils.random(2, chars)
+          + RandomStringUtils.random(ThreadLocalRandom.current().nextInt(20), chars.substring(0, 4));
+      for (int start = 0; start <= s.length(); start++) {
+        assertEquals(safeChars.indexOfFirstNonMemberPerChar(s, start, s.length()),
+            safeChars.indexOfFirstNonMember(s, start, s.length()), s);
+      }
+    }
+  }
+
+  @Test
+  public void testStreamingBytes() throws Exception {
+    final byte[] originalBytes = new byte[100_000];
+    ThreadLocalRandom.current().nextBytes(originalBytes);
+    for (RSUrlCodec.Encoder encoder : new RSUrlCodec.Encoder[] {RSUrlCodec.getEncoder(),
+        RSUrlCodec.getFormEncoder().lowerCase()}) {
+      final ByteArrayOutputStream encodedOut = new ByteArrayOutputStream();
+      final long encodedLen = encoder.encodeBytes(new ByteArrayInputStream(originalBytes),
+          Channels.newChannel(encodedOut));
+      final byte[] encodedBytes = encodedOut.toByteArray();
+      assertEquals(encodedBytes.length, encodedLen);
+      assertArrayEquals(encoder.encodeBytes(originalBytes), encodedBytes);
+      // Read in tiny chunks so % patterns are split across chunks
+      for (int maxChunk : new int[] {1, 2, 5, 8192}) {
+        final ByteArrayOutputStream decodedOut = new ByteArrayOutputStream();
+        final long decodedLen = RSUrlCodec.getDecoder().decodeBytes(
+            new TinyChunkChannel(encodedBytes, maxChunk), Channels.newChannel(decodedOut));
+        assertEquals(originalBytes.length, decodedLen);
+        assertArrayEquals(originalBytes, decodedOut.toByteArray());
+      }
+    }
+    assertThrows(IllegalArgumentException.class, () -> RSUrlCodec.getDecoder().decodeBytes(
+        new TinyChunkChannel("%4".getBytes(US_ASCII), 1),
+        Channels.newChannel(new ByteArrayOutputStream())));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    RSUrlCodec.getLenientDecoder().decodeBytes(new TinyChunkChannel("a%4".getBytes(US_ASCII), 1),
+        Channels.newChannel(out));
+    assertEquals("a%4", new String(out.toByteArray(), US_ASCII));
+  }
+
+  /**
+   * A {@link ReadableByteChannel} that reads at most a fixed number of bytes at a time.
+   */
+  static class TinyChunkChannel implements ReadableByteChannel {
+
+    private final ByteBuffer source;
+    private final int maxChunk;
+
+    TinyChunkChannel(byte[] bytes, int maxChunk) {
+      this.source = ByteBuffer.wrap(bytes);
+      this.maxChunk = maxChunk;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+      if (!source.hasRemaining()) {
+        return -1;
+      }
+      final int n = Math.min(Math.min(maxChunk, dst.remaining()), source.remaining());
+      for (int i = 0; i < n; i++) {
+        dst.put(source.get());
+      }
+      return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {}
+
+  }
+
+  @Test
+  public void testEncodeAllDecodeAll() throws Exception {
+    final List<String> inputs = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      // Mix inputs that need encoding with the ones that do not
+      inputs.add(i % 3 == 0 ? RandomStringUtils.randomAlphanumeric(i % 50)
+          : RandomStringUtils.random(i % 50));
+    }
+    final RSUrlCodec.Encoder encoder = RSUrlCodec.getFormEncoder();
+    final RSUrlCodec.Decoder decoder = RSUrlCodec.getDecoder().withCharset(ISO_8859_1);
+    final List<String> expectedEncoded = new ArrayList<>();
+    final List<String> expectedDecoded = new ArrayList<>();
+    for (String input : inputs) {
+      expectedEncoded.add(encoder.encode(input));
+      expectedDecoded.add(decoder.decode(encoder.encode(input)));
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      assertEquals(expectedEncoded, encoder.encodeAll(inputs));
+      assertEquals(expectedEncoded, encoder.encodeAll(inputs, executor));
+      assertEquals(expectedEncoded, encoder.encodeAll(new LinkedList<>(inputs), executor));
+      assertArrayEquals(expectedEncoded.toArray(),
+          encoder.encodeAll(inputs.toArray(new CharSequence[0]), executor));
+      assertEquals(expectedDecoded, decoder.decodeAll(expectedEncoded));
+      assertEquals(expectedDecoded, decoder.decodeAll(expectedEncoded, executor));
+      assertArrayEquals(expectedDecoded.toArray(),
+          decoder.decodeAll(expectedEncoded.toArray(new CharSequence[0])));
+      assertThrows(UnsupportedOperationException.class,
+          () -> encoder.encodeAll(inputs).add(""));
+      // The exception from a strict Decoder is not wrapped
+      final List<String> invalid = new ArrayList<>(expectedEncoded);
+      invalid.set(invalid.size() - 1, "%");
+      assertThrows(IllegalArgumentException.class, () -> decoder.decodeAll(invalid, executor));
+      assertThrows(NullPointerException.class, () -> encoder.encodeAll(inputs, null));
+      // One worker per thread at most, no matter how many chunks there are
+      final List<String> manyInputs = new ArrayList<>();
+      final List<String> manyExpected = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        manyInputs.addAll(inputs);
+        manyExpected.addAll(expectedEncoded);
+      }
+      final AtomicInteger taskCount = new AtomicInteger();
+      final Executor countingExecutor = task -> {
+        taskCount.incrementAndGet();
+        executor.execute(task);
+      };
+      assertEquals(manyExpected, encoder.encodeAll(manyInputs, countingExecutor));
+      assertTrue(taskCount.get() <= Runtime.getRuntime().availableProcessors());
+      assertEquals(manyExpected, encoder.encodeAll(manyInputs, ForkJoinPool.commonPool()));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testDecodeFullWidth() throws Exception {
     assertEquals(":", RSUrlCodec.decode("%3ａ"));
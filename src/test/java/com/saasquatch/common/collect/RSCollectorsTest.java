@@ -1,12 +1,23 @@
 package com.saasquatch.common.collect;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -195,6 +206,49 @@ public class RSCollectorsTest {
         "The result should be unmodifiable");
   }
 
+  @Test
+  public void testListParallel() {
+    for (int size : new int[] {0, 1, 2, 10, 11, 1000, 100000}) {
+      final List<Integer> expected =
+          IntStream.range(0, size).boxed().collect(Collectors.toList());
+      assertEquals(expected,
+          IntStream.range(0, size).boxed().parallel().collect(RSCollectors.toUnmodifiableList()));
+      assertEquals(expected, IntStream.range(0, size * 2).boxed().parallel()
+          .filter(i -> i < size).collect(RSCollectors.toUnmodifiableList()));
+      assertEquals(expected,
+          IntStream.range(0, size).boxed().collect(RSCollectors.toUnmodifiableList()));
+    }
+    final List<Object> singleton = IntStream.range(0, 1000).boxed().parallel()
+        .filter(i -> i == 500).collect(RSCollectors.toUnmodifiableList());
+    assertEquals("SingletonList", singleton.getClass().getSimpleName(),
+        "We should be getting a SingletonList from a parallel stream");
+  }
+
+  @Test
+  public void testArrayList() {
+    final List<String> collect =
+        Stream.of("a", null, "b", "a").collect(RSCollectors.toUnmodifiableList());
+    assertEquals(Arrays.asList("a", null, "b", "a"), collect);
+    assertEquals(Arrays.asList("a", null, "b", "a").hashCode(), collect.hashCode());
+    assertEquals(0, collect.indexOf("a"));
+    assertEquals(3, collect.lastIndexOf("a"));
+    assertEquals(1, collect.indexOf(null));
+    assertEquals(-1, collect.indexOf("c"));
+    assertArrayEquals(new Object[] {"a", null, "b", "a"}, collect.toArray());
+    assertArrayEquals(new String[] {"a", null, "b", "a"}, collect.toArray(new String[0]));
+    final String[] larger = new String[] {"1", "2", "3", "4", "5", "6"};
+    assertSame(larger, collect.toArray(larger));
+    assertArrayEquals(new String[] {"a", null, "b", "a", null, "6"}, larger);
+    assertEquals(4, collect.stream().count());
+    assertEquals(Arrays.asList("a", null, "b", "a"), collect.subList(0, 4));
+    assertThrows(UnsupportedOperationException.class, () -> collect.set(0, "c"));
+    assertThrows(UnsupportedOperationException.class, () -> collect.add("c"));
+    assertThrows(IndexOutOfBoundsException.class, () -> collect.get(4));
+    // Modifying the returned array should not affect the list
+    collect.toArray()[0] = "c";
+    assertEquals("a", collect.get(0));
+  }
+
   @Test
   public void testSetBasic() {
     final Set<String> original = Stream.generate(() -> RandomStringUtils.randomAlphanumeric(128))
@@ -211,6 +265,96 @@ public class RSCollectorsTest {
     }
   }
 
+  @Test
+  public void testCompactSet() {
+    for (int size = 2; size <= 100; size++) {
+      final Set<String> original = IntStream.range(0, size).mapToObj(i -> "s" + i)
+          .collect(Collectors.toSet());
+      final Set<String> collect = original.stream().collect(RSCollectors.toUnmodifiableSet());
+      assertEquals("RSImmutableArraySet", collect.getClass().getSimpleName());
+      assertEquals(original, collect);
+      assertEquals(collect, original);
+      assertEquals(original.hashCode(), collect.hashCode());
+      assertEquals(size, collect.stream().count());
+      for (String s : original) {
+        assertTrue(collect.contains(s));
+      }
+      assertFalse(collect.contains("s" + size));
+      assertFalse(collect.contains(null));
+      assertThrows(UnsupportedOperationException.class, collect::clear);
+      assertThrows(UnsupportedOperationException.class, () -> collect.add("foo"));
+      assertThrows(UnsupportedOperationException.class, () -> collect.remove("s0"));
+    }
+    // Colliding hash codes
+    final Set<String> collisions = Stream.of("Aa", "BB", "AaAa", "BBBB", "AaBB", "BBAa", "a", "b",
+        "c", "d", "e").collect(RSCollectors.toUnmodifiableSet());
+    assertTrue(collisions.contains("BB"));
+    assertTrue(collisions.contains("BBAa"));
+    assertFalse(collisions.contains("AaAaAa"));
+  }
+
+  @Test
+  public void testCompactSetNotUsed() {
+    final Set<String> withNull =
+        Stream.of("a", null, "b").collect(RSCollectors.toUnmodifiableSet());
+    assertEquals("UnmodifiableSet", withNull.getClass().getSimpleName());
+    assertTrue(withNull.contains(null));
+    final Set<String> caseInsensitive = Stream.of("a", "A", "b")
+        .collect(RSCollectors.toUnmodifiableSet(
+            () -> new TreeSet<>(String.CASE_INSENSITIVE_ORDER)));
+    assertEquals(2, caseInsensitive.size());
+    assertTrue(caseInsensitive.contains("B"));
+    final Set<String> linked = Stream.of("c", "b", "a")
+        .collect(RSCollectors.toUnmodifiableSet(LinkedHashSet::new));
+    assertEquals(Arrays.asList("c", "b", "a"), new ArrayList<>(linked));
+  }
+
+  @Test
+  public void testCompactMap() {
+    for (int size = 2; size <= 100; size++) {
+      final Map<String, Integer> original = IntStream.range(0, size).boxed()
+          .collect(Collectors.toMap(i -> "k" + i, Function.identity()));
+      final Map<String, Integer> collect = original.entrySet().stream()
+          .collect(RSCollectors.toUnmodifiableMap(Map.Entry::getKey, Map.Entry::getValue));
+      assertEquals("RSImmutableArrayMap", collect.getClass().getSimpleName());
+      assertEquals(original, collect);
+      assertEquals(collect, original);
+      assertEquals(original.hashCode(), collect.hashCode());
+      assertEquals(original.keySet(), collect.keySet());
+      assertEquals(new HashSet<>(original.values()), new HashSet<>(collect.values()));
+      for (Map.Entry<String, Integer> entry : original.entrySet()) {
+        assertEquals(entry.getValue(), collect.get(entry.getKey()));
+        assertTrue(collect.containsKey(entry.getKey()));
+        assertTrue(collect.containsValue(entry.getValue()));
+      }
+      assertNull(collect.get("k" + size));
+      assertNull(collect.get(null));
+      assertEquals(-1, (int) collect.getOrDefault("k" + size, -1));
+      assertFalse(collect.containsKey("k" + size));
+      assertFalse(collect.containsValue(size));
+      final Map<String, Integer> forEachResult = new HashMap<>();
+      collect.forEach(forEachResult::put);
+      assertEquals(original, forEachResult);
+      assertThrows(UnsupportedOperationException.class, collect::clear);
+      assertThrows(UnsupportedOperationException.class, () -> collect.put("foo", 1));
+      assertThrows(UnsupportedOperationException.class, () -> collect.remove("k0"));
+      assertThrows(UnsupportedOperationException.class,
+          () -> collect.entrySet().iterator().next().setValue(1));
+    }
+  }
+
+  @Test
+  public void testCompactSerialization() throws Exception {
+    for (int size : new int[] {2, 100}) {
+      final Set<String> set = IntStream.range(0, size).mapToObj(i -> "s" + i)
+          .collect(RSCollectors.toUnmodifiableSet());
+      final Map<String, Integer> map = IntStream.range(0, size).boxed()
+          .collect(RSCollectors.toUnmodifiableMap(i -> "k" + i, Function.identity()));
+      assertEquals(set, serializeAndDeserialize(set));
+      assertEquals(map, serializeAndDeserialize(map));
+    }
+  }
+
   @Test
   public void testEnumSetBasic() {
     final Set<TimeUnit> original = EnumSet.complementOf(EnumSet.of(TimeUnit.DAYS));
@@ -276,4 +420,15 @@ public class RSCollectorsTest {
     }, "We should be getting a merger exception");
   }
 
+  private static Object serializeAndDeserialize(Object o) throws Exception {
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+      oos.writeObject(o);
+    }
+    try (ObjectInputStream ois =
+        new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+      return ois.readObject();
+    }
+  }
+
 }
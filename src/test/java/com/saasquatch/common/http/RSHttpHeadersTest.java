@@ -3,6 +3,7 @@ package com.saasquatch.common.http;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.util.Arrays;
@@ -10,9 +11,12 @@ import java.util.Base64;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.Test;
 import com.google.common.collect.ImmutableSet;
+import com.saasquatch.common.base.RSStringInterner;
+import com.saasquatch.common.collect.RSCollectors;
 
 public class RSHttpHeadersTest {
 
@@ -91,6 +95,37 @@ public class RSHttpHeadersTest {
     assertEquals(ImmutableSet.of("br", "gzip", "x-gzip", "foobar"),
         RSHttpHeaders.getAcceptedEncodings(
             Arrays.asList("br, gzip,BR,iDENtity", "identity", "x-gzip,fooBAR")));
+    assertEquals(ImmutableSet.of("gzip", "\u00c9"),
+        RSHttpHeaders.getAcceptedEncodings(" \tGZIP ; q=1,\u00c9;, ;q=0, *;q=0.1,"));
+    assertEquals(Collections.emptySet(), RSHttpHeaders.getAcceptedEncodings(""));
+    assertEquals(Collections.emptySet(), RSHttpHeaders.getAcceptedEncodings("identity, *"));
+    // Same types of Sets as RSCollectors
+    assertSame(Stream.of("gzip").collect(RSCollectors.toUnmodifiableSet()).getClass(),
+        RSHttpHeaders.getAcceptedEncodings("gzip").getClass());
+    assertSame(Stream.of("br", "gzip").collect(RSCollectors.toUnmodifiableSet()).getClass(),
+        RSHttpHeaders.getAcceptedEncodings("br, gzip").getClass());
+    assertSame(Stream.of("br", "gzip").collect(RSCollectors.toUnmodifiableSet()).getClass(),
+        RSHttpHeaders.getAcceptedEncodings(Arrays.asList("br", null, "gzip")).getClass());
+  }
+
+  @Test
+  public void testGetAcceptEncodingsInterned() {
+    final RSStringInterner interner = RSStringInterner.create(16);
+    assertThrows(NullPointerException.class,
+        () -> RSHttpHeaders.getAcceptedEncodings("gzip", null));
+    final String gzip = interner.intern("gzip");
+    final String br = interner.intern("br");
+    final Set<String> encodings = RSHttpHeaders.getAcceptedEncodings("br;q=0.8, GZIP", interner);
+    assertEquals(ImmutableSet.of("br", "gzip"), encodings);
+    for (String encoding : encodings) {
+      assertSame(encoding.equals("br") ? br : gzip, encoding);
+    }
+    for (String encoding : RSHttpHeaders.getAcceptedEncodings(
+        Arrays.asList("gzip", "Br, identity"), interner)) {
+      assertSame(encoding.equals("br") ? br : gzip, encoding);
+    }
+    assertEquals(Collections.emptySet(),
+        RSHttpHeaders.getAcceptedEncodings((String) null, interner));
   }
 
 }